@@ -0,0 +1,100 @@
+import racetrack.jmh.RaceFixture;
+
+/**
+ * BenchmarkFixture
+ * ----------------
+ * RaceFixture over the game classes, for the JMH benchmarks in
+ * racetrack.jmh. Sits in the default package next to the game so it can
+ * call package-private methods (Racetrack.computeWeights,
+ * Car.choosePackedDestination).
+ *
+ * Rosters are built like RaceBenchmark's: same seed, same wall density,
+ * PlannerCars on a node budget only, so every run searches the same.
+ */
+public class BenchmarkFixture implements RaceFixture {
+
+    private static final long SEED = 42L;
+    private static final double WALL_DENSITY = 0.03;
+    private static final int MAX_TURNS = 1000;
+
+    /** PlannerCar node budget (no time budget, so runs repeat exactly). */
+    private static final int PLANNER_NODES = 2000;
+
+    private Racetrack track;
+    private String strategy;
+    private int carCount;
+    private Car[] cars;
+    private int next;
+
+    private HeapTrackStorage scratch;
+    private int[] scratchWeights;
+
+    private RaceSimulator race;
+
+    public BenchmarkFixture() {
+    }
+
+    @Override
+    public void setUp(int size, int cars, String strategy) {
+        this.track = new Racetrack(TrackGenerator.generate(size, size, WALL_DENSITY, SEED));
+        this.strategy = strategy;
+        this.carCount = Math.min(cars, track.startOrder().length);
+
+        scratchWeights = new int[size * size];
+        scratch = new HeapTrackStorage(track.cellData(), scratchWeights);
+
+        // cars deciding in place, indexed like a race would
+        this.cars = newRoster();
+        new OccupancyGrid(track, this.cars);
+        next = 0;
+
+        race = new RaceSimulator(track, newRoster(), MAX_TURNS);
+    }
+
+    @Override
+    public int computeWeights() {
+        Racetrack.computeWeights(track.height(), track.width(), scratch, track.terrainCosts());
+        return scratchWeights[scratchWeights.length / 2];
+    }
+
+    @Override
+    public long chooseDestination() {
+        Car car = cars[next];
+        next = (next + 1 == cars.length) ? 0 : next + 1;
+        return car.choosePackedDestination(track, cars);
+    }
+
+    @Override
+    public int playTurn() {
+        if (race.playTurn()) {
+            race = new RaceSimulator(track, newRoster(), MAX_TURNS);
+        }
+        return race.getTurns();
+    }
+
+    @Override
+    public int roster() {
+        return carCount;
+    }
+
+    private Car[] newRoster() {
+        StartGrid grid = new StartGrid(track);
+        Car[] roster = new Car[carCount];
+        for (int i = 0; i < carCount; i++) {
+            int idx = grid.nextIndex();
+            int row = track.rowOf(idx);
+            int col = track.colOf(idx);
+            char id = (char) ('0' + i % 10);
+            if (strategy.equals(SPORTS)) {
+                roster[i] = new SportsCar(id, row, col, 3, 3, 5, track);
+            } else if (strategy.equals(AGILE)) {
+                roster[i] = new AgileCar(id, row, col, 3, 3, 5, track);
+            } else if (strategy.equals(PLANNER)) {
+                roster[i] = new PlannerCar(id, row, col, 3, 3, 5, track, PLANNER_NODES, Long.MAX_VALUE);
+            } else {
+                throw new IllegalArgumentException("Unknown car strategy: " + strategy);
+            }
+        }
+        return roster;
+    }
+}
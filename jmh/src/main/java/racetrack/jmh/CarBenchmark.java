@@ -0,0 +1,67 @@
+package racetrack.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CarBenchmark
+ * ------------
+ * Per-car hot paths on a size x size generated track, for a roster of
+ * cars cars of one strategy:
+ *  - chooseDestination: one car's decision (cars take turns, none moves)
+ *  - move: one RaceSimulator turn, i.e. Car.move for every car; divide
+ *    by the roster size for the cost of a single move
+ *
+ * Rosters are cut to the start cells a track has, so size 10 never
+ * holds more than a few dozen cars. move starts a new race when one
+ * ends, so its gc.alloc.rate.norm (-prof gc) is that race's setup
+ * (mostly the OccupancyGrid, one slot per cell) spread over the race's
+ * turns. The turns themselves allocate nothing; RaceBenchmark -alloc
+ * checks that turn by turn.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CarBenchmark {
+
+    @Param({ "10", "64", "256", "1024", "4096" })
+    public int size;
+
+    @Param({ "3", "10", "100", "1000" })
+    public int cars;
+
+    @Param({ RaceFixture.SPORTS, RaceFixture.AGILE, RaceFixture.PLANNER })
+    public String strategy;
+
+    private RaceFixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = RaceFixture.create();
+        fixture.setUp(size, cars, strategy);
+    }
+
+    @Benchmark
+    public long chooseDestination() {
+        return fixture.chooseDestination();
+    }
+
+    @Benchmark
+    public int move() {
+        return fixture.playTurn();
+    }
+}
@@ -0,0 +1,55 @@
+package racetrack.jmh;
+
+/**
+ * RaceFixture
+ * -----------
+ * The game classes live in the default package, which JMH benchmarks may
+ * not use and named packages cannot import. BenchmarkFixture (default
+ * package) implements this interface instead, and the benchmarks reach
+ * the game only through it: one interface call per operation, no
+ * reflection inside the measured loop.
+ */
+public interface RaceFixture {
+
+    /** Car strategies a roster can be made of. */
+    String SPORTS = "SportsCar";
+    String AGILE = "AgileCar";
+    String PLANNER = "PlannerCar";
+
+    /**
+     * Generate a size x size track (same seed every time) and place up
+     * to cars cars of the given strategy on its best start cells. Rosters
+     * larger than the track's start cells are cut to fit.
+     */
+    void setUp(int size, int cars, String strategy);
+
+    /** Recompute the whole weight grid into scratch storage. */
+    int computeWeights();
+
+    /**
+     * Decision of the next car in the roster, round-robin, without
+     * moving it (the packed destination a race uses).
+     */
+    long chooseDestination();
+
+    /**
+     * Play one turn (Car.move for every car), starting a fresh race with
+     * the same roster once the current one is over.
+     */
+    int playTurn();
+
+    /** Number of cars actually placed by setUp. */
+    int roster();
+
+    /** The default-package implementation. */
+    static RaceFixture create() {
+        try {
+            return Class.forName("BenchmarkFixture")
+                    .asSubclass(RaceFixture.class)
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchmarkFixture is missing from the classpath.", e);
+        }
+    }
+}
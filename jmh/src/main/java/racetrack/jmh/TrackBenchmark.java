@@ -0,0 +1,48 @@
+package racetrack.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * TrackBenchmark
+ * --------------
+ * Racetrack.computeWeights over a whole size x size generated track.
+ * Weights go to scratch storage, so every call does the full
+ * Dijkstra-style sweep; with -prof gc, gc.alloc.rate.norm shows the
+ * bucket arrays it allocates per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TrackBenchmark {
+
+    @Param({ "10", "64", "256", "1024", "4096" })
+    public int size;
+
+    private RaceFixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = RaceFixture.create();
+        fixture.setUp(size, 1, RaceFixture.SPORTS);
+    }
+
+    @Benchmark
+    public int computeWeights() {
+        return fixture.computeWeights();
+    }
+}
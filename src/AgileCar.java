@@ -1,11 +1,13 @@
-import java.util.List;
-
 /**
  * AgileCar
  * --------
  * CPU car that focuses on maneuvering.
  * It only selects moves whose full Bresenham path does NOT collide
- * with walls, boundaries, or other cars.
+ * with walls, boundaries, or other cars (and that rough terrain won't cut
+ * short), and among those picks the one whose landing cell (a finish
+ * cell it crosses, or else its destination) has the fewest turns to
+ * finish (ties go to the lowest weight; on tracks too large for a turn field,
+ * just the lowest weight).
  */
 public class AgileCar extends Car {
 
@@ -22,58 +24,101 @@ public class AgileCar extends Car {
 
     @Override
     public Position chooseDestination(Racetrack track, Car[] cars) {
-        int bestWeight = track.getWeight(getRow(), getCol());
-        Position bestPos = getPosition();
-
-        for (int dr = -getRowVelocity(); dr <= getRowVelocity(); dr++) {
-            for (int dc = -getColVelocity(); dc <= getColVelocity(); dc++) {
-
-                if (dr == 0 && dc == 0) continue;
-                if (Math.abs(dr) + Math.abs(dc) > getMaxSpeed()) continue;
-
-                Position candidate = new Position(getRow() + dr, getCol() + dc);
-
-                if (track.isOutOfBounds(candidate)) continue;
-                if (track.isWall(candidate)) continue;
-
-                // Skip any move where the path would collide
-                if (wouldCollide(track, cars, candidate)) {
-                    continue;
-                }
+        return toPosition(choosePackedDestination(track, cars));
+    }
 
-                int w = track.getWeight(candidate.getRow(), candidate.getCol());
-                if (w < bestWeight) {
-                    bestWeight = w;
-                    bestPos = candidate;
-                }
+    @Override
+    protected long choosePackedDestination(Racetrack track, Car[] cars) {
+        int row = getRow();
+        int col = getCol();
+        TurnWeightField turns = track.getTurnWeights(getMoveSet());
+        int bestWeight = rank(track, turns, track.index(row, col));
+        int bestIdx = -1;
+
+        MoveSet moves = getMoveSet();
+        LineOfSightIndex sight = track.getLineOfSight(moves);
+        for (int i = 0; i < moves.size(); i++) {
+            int nr = row + moves.rowOffset(i);
+            int nc = col + moves.colOffset(i);
+            if (track.isOutOfBounds(nr, nc)) continue;
+
+            int idx = track.index(nr, nc);
+            if (track.isWallAt(idx)) continue;
+
+            int staticCheck = (sight == null)
+                    ? LineOfSightIndex.UNKNOWN
+                    : sight.lookup(row, col, i);
+            if (staticCheck == LineOfSightIndex.BLOCKED) continue;
+
+            // rank where the move really ends (a finish cell it crosses);
+            // a clear line ends on its destination
+            int landing = (staticCheck == LineOfSightIndex.CLEAR)
+                    ? idx
+                    : track.traceMove(getCursor(), row, col, nr, nc, getMaxSpeed());
+
+            // Only check cars for moves that would actually improve
+            int w = rank(track, turns, landing);
+            if (w >= bestWeight) continue;
+
+            // Skip any move where the path would collide
+            if (wouldCollide(track, cars, nr, nc, staticCheck)) {
+                continue;
             }
+
+            bestWeight = w;
+            bestIdx = idx;
         }
 
-        return bestPos;
+        if (bestIdx < 0) return packDestination(row, col);
+        return packDestination(track.rowOf(bestIdx), track.colOf(bestIdx));
     }
 
     /**
      * Simulate path to a candidate destination.
-     * Return true if the path would collide with a wall, boundary, or car.
+     * Return true if the path would collide with a wall, boundary, or car,
+     * or stop early on terrain the car can't pay for.
+     *
+     * staticCheck is the line-of-sight answer for this line. When it is
+     * known, walls and bounds are already settled and only cars are
+     * checked along the path.
      */
-    private boolean wouldCollide(Racetrack track, Car[] cars, Position dest) {
-        List<Position> path = track.getPath(getPosition(), dest);
+    private boolean wouldCollide(Racetrack track, Car[] cars, int destRow, int destCol, int staticCheck) {
+        if (staticCheck == LineOfSightIndex.BLOCKED) return true;
+
+        PathCursor cursor = getCursor();
+        cursor.reset(getRow(), getCol(), destRow, destCol);
+
+        if (staticCheck != LineOfSightIndex.UNKNOWN) {
+            boolean stopsAtFinish = staticCheck == LineOfSightIndex.CLEAR_TO_FINISH;
+            while (cursor.next()) {
+                int r = cursor.row();
+                int c = cursor.col();
+                if (findCarAt(cars, r, c) != null) return true;
+                if (stopsAtFinish && track.isFinishAt(track.index(r, c))) return false;
+            }
+            return false;
+        }
 
-        for (int i = 1; i < path.size(); i++) {
-            Position p = path.get(i);
+        int budget = getMaxSpeed();
+        boolean first = true;
+        while (cursor.next()) {
+            int r = cursor.row();
+            int c = cursor.col();
 
-            if (track.isOutOfBounds(p)) return true;
-            if (track.isWall(p)) return true;
+            if (track.isOutOfBounds(r, c)) return true;
 
-            for (Car car : cars) {
-                if (car == null || car == this) continue;
-                if (car.getRow() == p.getRow() && car.getCol() == p.getCol()) {
-                    return true;
-                }
-            }
+            int idx = track.index(r, c);
+            if (track.isWallAt(idx)) return true;
+
+            // the first cell is always entered, however rough
+            budget -= track.costAt(idx);
+            if (budget < 0 && !first) return true;
+            first = false;
+
+            if (findCarAt(cars, r, c) != null) return true;
 
             // Finish line is safe (AgileCar is happy to win)
-            if (track.isFinish(p)) return false;
+            if (track.isFinishAt(idx)) return false;
         }
 
         return false;
@@ -1,6 +1,7 @@
 //update for program 3
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -9,10 +10,19 @@ import java.util.List;
  * Base class for all cars.
  *  - Stores position, speed limits, move order, weight at current position.
  *  - Stores path history so the winner's path can be shown.
- *  - Implements shared move() logic with Bresenham + collision detection.
+ *  - Implements shared move() logic with Bresenham + collision detection;
+ *    entering a cell spends its terrain cost from a budget of maxSpeed,
+ *    but the first cell of a move is always entered, so terrain slows a
+ *    car and never blocks it.
+ *  - Destinations travel through the turn loop packed into a long (see
+ *    packDestination), so CPU cars that override choosePackedDestination
+ *    play whole turns without allocating.
  */
 public abstract class Car {
 
+    /** Packed destination meaning "none" (chooseDestination returned null). */
+    static final long NO_DESTINATION = Long.MIN_VALUE;
+
     private final char idNumber;
     private int row;
     private int col;
@@ -21,14 +31,52 @@ public abstract class Car {
     private int colVelocity;
     private int maxSpeed;
 
+    /** Legal offsets for this car's velocity profile (shared). */
+    private final MoveSet moveSet;
+
     private boolean isWinner;
 
+    /** Turn order within the race; assigned by the race, not the car. */
     private int moveOrder;
     private int weightPosition;
-    public static int nextOrder = 1;
 
-    /** Every grid point this car has actually visited. */
-    private List<Position> pathHistory;
+    /**
+     * Every grid point this car has actually visited, packed as
+     * row * historyWidth + col. A cell is not repeated when the car stays
+     * on it (for example after a collision).
+     */
+    private int[] pathHistory;
+    private int pathLength;
+    private final int historyWidth;
+
+    /** Reused for every Bresenham walk this car makes. */
+    private final PathCursor cursor = new PathCursor();
+
+    /** Result of the most recent call to move(). */
+    private MoveOutcome lastOutcome = MoveOutcome.NONE;
+
+    /** Destination chosen in the most recent call to move(), packed. */
+    private long lastDestination = NO_DESTINATION;
+
+    /** Bresenham cells walked by the most recent move. */
+    private int lastSteps;
+
+    /** Cell the most recent collision happened on, and the car there. */
+    private int lastHitRow;
+    private int lastHitCol;
+    private Car lastHitCar;
+
+    /** Race metrics to report decisions and moves to, or null. */
+    private RaceMetrics metrics;
+
+    /** Listeners told about every move, or null; events are reused. */
+    private RaceListener[] listeners;
+    private MoveEvent moveEvent;
+    private CollisionEvent collisionEvent;
+    private WinEvent winEvent;
+
+    /** Race occupancy index this car keeps up to date, or null. */
+    private OccupancyGrid occupancy;
 
     public Car(char idNumber,
                int startRow,
@@ -44,13 +92,15 @@ public abstract class Car {
         this.rowVelocity = rowVelocity;
         this.colVelocity = colVelocity;
         this.maxSpeed = maxSpeed;
+        this.moveSet = MoveSet.of(rowVelocity, colVelocity, maxSpeed);
         this.isWinner = false;
 
-        this.moveOrder = nextOrder++;
+        this.moveOrder = 0;
         this.weightPosition = track.getWeight(startRow, startCol);
 
-        this.pathHistory = new ArrayList<>();
-        this.pathHistory.add(new Position(startRow, startCol));
+        this.historyWidth = track.width();
+        this.pathHistory = new int[16];
+        addToPath(startRow, startCol);
     }
 
     public char getIdNumber() { return idNumber; }
@@ -63,133 +113,333 @@ public abstract class Car {
     public int getRowVelocity() { return rowVelocity; }
     public int getColVelocity() { return colVelocity; }
     public int getMaxSpeed() { return maxSpeed; }
+    public MoveSet getMoveSet() { return moveSet; }
     public int getMoveOrder() { return moveOrder; }
+    void setMoveOrder(int moveOrder) { this.moveOrder = moveOrder; }
     public int getWeightPosition() { return weightPosition; }
     public void updateWeightPosition(Racetrack track) {
         weightPosition = track.getWeight(row, col);
     }
-    public List<Position> getPathHistory() { return pathHistory; }
+    public int getPathLength() { return pathLength; }
+    public int getPathRow(int i) { return pathHistory[i] / historyWidth; }
+    public int getPathCol(int i) { return pathHistory[i] % historyWidth; }
+
+    /**
+     * Path history as Positions. Builds a new list on every call, so hot
+     * code should use getPathLength / getPathRow / getPathCol instead.
+     */
+    public List<Position> getPathHistory() {
+        List<Position> path = new ArrayList<>(pathLength);
+        for (int i = 0; i < pathLength; i++) {
+            path.add(new Position(getPathRow(i), getPathCol(i)));
+        }
+        return path;
+    }
+
+    public MoveOutcome getLastOutcome() { return lastOutcome; }
+
+    /**
+     * Destination of the most recent move, or null. Builds a new Position
+     * on every call; hot code should use hasLastDestination /
+     * getLastDestinationRow / getLastDestinationCol instead.
+     */
+    public Position getLastDestination() { return toPosition(lastDestination); }
+    public boolean hasLastDestination() { return lastDestination != NO_DESTINATION; }
+    public int getLastDestinationRow() { return destinationRow(lastDestination); }
+    public int getLastDestinationCol() { return destinationCol(lastDestination); }
+
+    /** Pack a destination into one long (row high, column low). */
+    protected static long packDestination(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    static int destinationRow(long dest) { return (int) (dest >> 32); }
+    static int destinationCol(long dest) { return (int) dest; }
+
+    /** Unpack a destination; null for NO_DESTINATION. */
+    protected static Position toPosition(long dest) {
+        if (dest == NO_DESTINATION) return null;
+        return new Position(destinationRow(dest), destinationCol(dest));
+    }
 
     protected void setPosition(Position p) {
-        this.row = p.getRow();
-        this.col = p.getCol();
+        setPosition(p.getRow(), p.getCol());
+    }
+
+    protected void setPosition(int row, int col) {
+        int oldRow = this.row;
+        int oldCol = this.col;
+        this.row = row;
+        this.col = col;
+        if (occupancy != null && (oldRow != row || oldCol != col)) {
+            occupancy.moved(this, oldRow, oldCol, row, col);
+        }
+    }
+
+    /** Called by RaceSimulator when metrics are attached or detached. */
+    void setMetrics(RaceMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /** Called by RaceSimulator when its listeners change (null for none). */
+    void setListeners(RaceListener[] listeners) {
+        this.listeners = listeners;
+    }
+
+    /** Called by OccupancyGrid when this car is attached or detached. */
+    void setOccupancy(OccupancyGrid occupancy) {
+        this.occupancy = occupancy;
+    }
+
+    /** Cursor subclasses may reuse while choosing a destination. */
+    protected PathCursor getCursor() { return cursor; }
+
+    /**
+     * Ranking used by the greedy cars (lower is better): turns to finish
+     * for the car's velocity profile first, then step weight. Just the step
+     * weight when the track has no turn field (turns is null).
+     */
+    protected static int rank(Racetrack track, TurnWeightField turns, int idx) {
+        if (turns == null) return track.weightAt(idx);
+        return turns.at(idx) * (Racetrack.WALL_WEIGHT + 1) + track.weightAt(idx);
     }
 
     /**
      * Subclasses choose a destination each turn.
+     * Must only read the track and the other cars, never move them, so
+     * RaceSimulator can run several cars' decisions at once.
      */
     public abstract Position chooseDestination(Racetrack track, Car[] cars);
 
+    /**
+     * chooseDestination with the destination packed by packDestination
+     * (NO_DESTINATION for null); this is what move() calls. Cars whose
+     * decisions run every turn override it to avoid building a Position.
+     */
+    protected long choosePackedDestination(Racetrack track, Car[] cars) {
+        Position dest = chooseDestination(track, cars);
+        return (dest == null) ? NO_DESTINATION : packDestination(dest.getRow(), dest.getCol());
+    }
+
+    /**
+     * True for cars whose decision waits on a person (console input).
+     * Parallel races still decide these one at a time on the race thread.
+     */
+    public boolean isInteractive() {
+        return false;
+    }
+
     /**
      * Shared move logic:
      *  - Ask subclass for destination
      *  - Check speed limits
      *  - Get Bresenham path
-     *  - Check for boundary, wall, other car, finish
+     *  - Check for boundary, wall, rough terrain, other car, finish
      *  - Update position and pathHistory
-     *  - Return professor-style message about what happened
+     *  - Tell the race's listeners what happened
      */
-    public String move(Racetrack track, Car[] cars) {
+    public MoveOutcome move(Racetrack track, Car[] cars) {
         if (isWinner) {
-            return "";
+            lastOutcome = MoveOutcome.NONE;
+            lastDestination = NO_DESTINATION;
+            return lastOutcome;
         }
+        return applyMove(track, cars, decide(track, cars));
+    }
 
-        Position start = getPosition();
-        Position dest = chooseDestination(track, cars);
+    /**
+     * choosePackedDestination, timed when metrics are attached or a
+     * flight recording wants decision events.
+     */
+    long decide(Racetrack track, Car[] cars) {
+        RaceMetrics m = metrics;
+        boolean event = RaceFlightEvents.isDecisionEnabled();
+        if (m == null && !event) {
+            return choosePackedDestination(track, cars);
+        }
+
+        long start = System.nanoTime();
+        long dest = choosePackedDestination(track, cars);
+        long nanos = System.nanoTime() - start;
+        if (m != null) m.recordDecision(this, nanos);
+        if (event) RaceFlightEvents.decision(this, nanos);
+        return dest;
+    }
+
+    /**
+     * Move towards a destination that was already decided (by
+     * chooseDestination, or read back from a recording), with exactly the
+     * same rules as move().
+     */
+    public MoveOutcome applyMove(Racetrack track, Car[] cars, Position dest) {
+        return applyMove(track, cars,
+                (dest == null) ? NO_DESTINATION : packDestination(dest.getRow(), dest.getCol()));
+    }
 
-        if (dest == null || dest.equals(start)) {
-            return "";
+    /** applyMove with a packed destination (see packDestination). */
+    MoveOutcome applyMove(Racetrack track, Car[] cars, long dest) {
+        int startRow = row;
+        int startCol = col;
+
+        lastOutcome = resolveMove(track, cars, dest);
+        if (metrics != null) {
+            metrics.recordMove(lastOutcome, lastSteps);
+        }
+        if (RaceFlightEvents.isMoveEnabled()) {
+            RaceFlightEvents.move(this, lastOutcome, lastSteps);
+        }
+        if (listeners != null && lastOutcome != MoveOutcome.NONE) {
+            publish(startRow, startCol, dest);
+        }
+        return lastOutcome;
+    }
+
+    private MoveOutcome resolveMove(Racetrack track, Car[] cars, long dest) {
+        lastDestination = dest;
+        lastSteps = 0;
+        if (isWinner) {
+            return MoveOutcome.NONE;
+        }
+
+        int startRow = row;
+        int startCol = col;
+        int destRow = destinationRow(dest);
+        int destCol = destinationCol(dest);
+
+        if (dest == NO_DESTINATION || (destRow == startRow && destCol == startCol)) {
+            return MoveOutcome.NONE;
         }
 
-        int dRow = dest.getRow() - start.getRow();
-        int dCol = dest.getCol() - start.getCol();
+        int dRow = destRow - startRow;
+        int dCol = destCol - startCol;
 
         // Speed limits
-        if (Math.abs(dRow) > rowVelocity ||
-                Math.abs(dCol) > colVelocity ||
-                Math.abs(dRow) + Math.abs(dCol) > maxSpeed) {
+        if (!moveSet.allows(dRow, dCol)) {
             // invalid move silently ignored for CPU cars
-            return "";
+            return MoveOutcome.NONE;
         }
 
-        List<Position> path = track.getPath(start, dest);
-        Position previous = start;
+        cursor.reset(startRow, startCol, destRow, destCol);
+        int budget = maxSpeed;
 
-        for (int i = 1; i < path.size(); i++) {
-            Position current = path.get(i);
+        while (cursor.next()) {
+            int r = cursor.row();
+            int c = cursor.col();
+            lastSteps++;
 
             // boundary
-            if (track.isOutOfBounds(current)) {
-                setPosition(previous);
-                pathHistory.add(previous);
-                return formatCollisionMessage("boundary", start, dest, current, previous);
+            if (track.isOutOfBounds(r, c)) {
+                return collide(r, c, null, MoveOutcome.BOUNDARY);
             }
 
             // wall
-            if (track.isWall(current)) {
-                setPosition(previous);
-                pathHistory.add(previous);
-                return formatCollisionMessage("wall", start, dest, current, previous);
+            int idx = track.index(r, c);
+            if (track.isWallAt(idx)) {
+                return collide(r, c, null, MoveOutcome.WALL);
+            }
+
+            // terrain the car can no longer pay for (never on plain track,
+            // where a legal move has at most maxSpeed cells); the first
+            // cell is always entered
+            budget -= track.costAt(idx);
+            if (budget < 0 && lastSteps > 1) {
+                addToPath(row, col);
+                return MoveOutcome.TERRAIN;
             }
 
             // other car
-            Car other = findCarAt(cars, current, this);
+            Car other = findCarAt(cars, r, c);
             if (other != null) {
-                setPosition(previous);
-                pathHistory.add(previous);
-                return formatCollisionMessage("car " + other.getIdNumber(), start, dest, current, previous);
+                return collide(r, c, other, MoveOutcome.CAR);
             }
 
             // finish line
-            if (track.isFinish(current)) {
-                setPosition(current);
-                pathHistory.add(current);
+            if (track.isFinishAt(idx)) {
+                setPosition(r, c);
+                addToPath(r, c);
                 isWinner = true;
-                return formatWinnerMessage(start, dest, current);
+                return MoveOutcome.FINISH;
             }
 
             // normal step
-            setPosition(current);
-            pathHistory.add(current);
-            previous = current;
+            setPosition(r, c);
+            addToPath(r, c);
         }
 
-        return "";
+        return MoveOutcome.MOVED;
     }
 
-    private Car findCarAt(Car[] cars, Position p, Car self) {
-        for (Car car : cars) {
-            if (car == null || car == self) continue;
-            if (car.getRow() == p.getRow() && car.getCol() == p.getCol()) {
-                return car;
-            }
-        }
-        return null;
+    /**
+     * The car stops on the last safe cell, which is its current position
+     * since every normal step is applied as it is walked.
+     */
+    private MoveOutcome collide(int hitRow, int hitCol, Car other, MoveOutcome type) {
+        addToPath(row, col);
+        lastHitRow = hitRow;
+        lastHitCol = hitCol;
+        lastHitCar = other;
+        return type;
     }
 
-    private String formatCollisionMessage(String type,
-                                          Position start,
-                                          Position dest,
-                                          Position collision,
-                                          Position previous) {
+    /**
+     * Make room for at least cells path entries up front, so moves don't
+     * grow the history (called by RaceSimulator).
+     */
+    void reservePath(int cells) {
+        if (cells > pathHistory.length) {
+            pathHistory = Arrays.copyOf(pathHistory, cells);
+        }
+    }
 
-        String carName = "Car " + idNumber;
+    /** Append a visited cell to the path unless the car is still on it. */
+    private void addToPath(int r, int c) {
+        int cell = r * historyWidth + c;
+        if (pathLength > 0 && pathHistory[pathLength - 1] == cell) return;
+        if (pathLength == pathHistory.length) {
+            pathHistory = Arrays.copyOf(pathHistory, pathLength * 2);
+        }
+        pathHistory[pathLength++] = cell;
+    }
 
-        return carName + " attempts to move to " + dest + ".\n" +
-                "Before reaching the space, " + carName +
-                " passes a " + type + " at " + collision + ".\n" +
-                "This means " + carName +
-                " will not reach its destination and will land on the previous safe spot " +
-                previous + ".";
+    /** Fill in this car's reusable event for the last move and send it. */
+    private void publish(int startRow, int startCol, long dest) {
+        RaceListener[] targets = listeners;
+        int destRow = destinationRow(dest);
+        int destCol = destinationCol(dest);
+
+        if (lastOutcome == MoveOutcome.MOVED || lastOutcome == MoveOutcome.TERRAIN) {
+            if (moveEvent == null) moveEvent = new MoveEvent();
+            moveEvent.set(this, startRow, startCol, destRow, destCol);
+            moveEvent.setStoppedEarly(lastOutcome == MoveOutcome.TERRAIN);
+            for (RaceListener l : targets) l.onMove(moveEvent);
+        } else if (lastOutcome == MoveOutcome.FINISH) {
+            if (winEvent == null) winEvent = new WinEvent();
+            winEvent.set(this, startRow, startCol, destRow, destCol);
+            for (RaceListener l : targets) l.onWin(winEvent);
+        } else {
+            if (collisionEvent == null) collisionEvent = new CollisionEvent();
+            collisionEvent.set(this, startRow, startCol, destRow, destCol);
+            collisionEvent.setHit(lastOutcome, lastHitRow, lastHitCol, lastHitCar);
+            for (RaceListener l : targets) l.onCollision(collisionEvent);
+        }
     }
 
-    private String formatWinnerMessage(Position start, Position dest, Position finishPos) {
-        String carName = "Car " + idNumber;
+    /**
+     * Find another car on (r,c). Uses the occupancy grid when this car is
+     * attached to one, otherwise scans the cars array.
+     */
+    protected Car findCarAt(Car[] cars, int r, int c) {
+        if (occupancy != null) {
+            Car car = occupancy.carAt(r, c);
+            return car == this ? null : car;
+        }
 
-        return carName + " attempts to move to " + dest + ".\n" +
-                "Before reaching the space, " + carName +
-                " passes the finish line at " + finishPos + ".\n" +
-                "CAR " + idNumber + " WINS!";
+        for (Car car : cars) {
+            if (car == null || car == this) continue;
+            if (car.getRow() == r && car.getCol() == c) {
+                return car;
+            }
+        }
+        return null;
     }
 }
-
@@ -0,0 +1,49 @@
+import java.util.Arrays;
+
+/**
+ * CellHeap
+ * --------
+ * Binary min-heap of track cells, each packed with its key (a weight or
+ * a turn count) as key << 32 | flat cell index in one long, so equal
+ * keys pop in cell order. Used by the incremental repairs after
+ * Racetrack.setCell; grows as needed and never allocates per entry.
+ */
+final class CellHeap {
+
+    private long[] items = new long[16];
+    private int size;
+
+    boolean isEmpty() { return size == 0; }
+
+    void push(int key, int cell) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size * 2);
+        }
+        long entry = ((long) key << 32) | cell;
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (items[parent] <= entry) break;
+            items[i] = items[parent];
+            i = parent;
+        }
+        items[i] = entry;
+    }
+
+    /** @return the smallest entry; key in the high half, cell in the low */
+    long pop() {
+        long top = items[0];
+        long last = items[--size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && items[child + 1] < items[child]) child++;
+            if (last <= items[child]) break;
+            items[i] = items[child];
+            i = child;
+        }
+        if (size > 0) items[i] = last;
+        return top;
+    }
+}
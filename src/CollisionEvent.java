@@ -0,0 +1,30 @@
+/**
+ * CollisionEvent
+ * --------------
+ * A car was stopped before its destination. It stays on the last safe
+ * cell (getRow/getCol); the cell it could not enter is the hit cell.
+ */
+public class CollisionEvent extends RaceEvent {
+
+    private MoveOutcome type;
+    private int hitRow;
+    private int hitCol;
+    private Car otherCar;
+
+    void setHit(MoveOutcome type, int hitRow, int hitCol, Car otherCar) {
+        this.type = type;
+        this.hitRow = hitRow;
+        this.hitCol = hitCol;
+        this.otherCar = otherCar;
+    }
+
+    /** BOUNDARY, WALL or CAR. */
+    public MoveOutcome getType() { return type; }
+    public int getHitRow() { return hitRow; }
+    public int getHitCol() { return hitCol; }
+
+    /** The car that was in the way, or null unless the type is CAR. */
+    public Car getOtherCar() { return otherCar; }
+
+    public Position getHitPosition() { return new Position(hitRow, hitCol); }
+}
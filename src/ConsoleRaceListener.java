@@ -0,0 +1,56 @@
+import java.io.PrintStream;
+
+/**
+ * ConsoleRaceListener
+ * -------------------
+ * Prints the classic race commentary for every collision and win
+ * (RaceGame registers one on System.out), and for moves rough terrain
+ * cut short. Other moves print nothing.
+ */
+public class ConsoleRaceListener implements RaceListener {
+
+    private final PrintStream out;
+
+    public ConsoleRaceListener(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void onMove(MoveEvent event) {
+        if (!event.isStoppedEarly()) return;
+
+        String carName = "Car " + event.getCar().getIdNumber();
+        out.println(carName + " attempts to move to " + event.getDestination() + ".\n" +
+                "Rough terrain slows " + carName + " down and it stops at " +
+                event.getPosition() + ".");
+    }
+
+    @Override
+    public void onCollision(CollisionEvent event) {
+        String carName = "Car " + event.getCar().getIdNumber();
+        String type;
+        switch (event.getType()) {
+            case BOUNDARY: type = "boundary"; break;
+            case WALL:     type = "wall"; break;
+            default:       type = "car " + event.getOtherCar().getIdNumber(); break;
+        }
+
+        out.println(carName + " attempts to move to " + event.getDestination() + ".\n" +
+                "Before reaching the space, " + carName +
+                " passes a " + type + " at " + event.getHitPosition() + ".\n" +
+                "This means " + carName +
+                " will not reach its destination and will land on the previous safe spot " +
+                event.getPosition() + ".");
+    }
+
+    @Override
+    public void onWin(WinEvent event) {
+        char id = event.getCar().getIdNumber();
+        String carName = "Car " + id;
+
+        out.println(carName + " attempts to move to " + event.getDestination() + ".\n" +
+                "Before reaching the space, " + carName +
+                " passes the finish line at " + event.getPosition() + ".\n" +
+                "CAR " + id + " WINS!");
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * FixedOrderScheduler
+ * -------------------
+ * Cars always move in roster order; scheduling costs nothing.
+ */
+public class FixedOrderScheduler implements TurnScheduler {
+
+    @Override
+    public void schedule(Car[] cars, Racetrack track, int[] order) {
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+    }
+}
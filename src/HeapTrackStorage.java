@@ -0,0 +1,41 @@
+/**
+ * HeapTrackStorage
+ * ----------------
+ * Default TrackStorage: one byte[] of cells and one int[] of weights,
+ * row-major, on the Java heap.
+ */
+public class HeapTrackStorage implements TrackStorage {
+
+    private final byte[] cells;
+    private final int[] weights;
+
+    public HeapTrackStorage(byte[] cells, int[] weights) {
+        if (cells.length != weights.length) {
+            throw new IllegalArgumentException("Cells and weights must have the same size.");
+        }
+        this.cells = cells;
+        this.weights = weights;
+    }
+
+    @Override
+    public byte cell(int idx) { return cells[idx]; }
+
+    @Override
+    public int weight(int idx) { return weights[idx]; }
+
+    @Override
+    public void setCell(int idx, byte cell) { cells[idx] = cell; }
+
+    @Override
+    public void setWeight(int idx, int weight) { weights[idx] = weight; }
+
+    @Override
+    public boolean isMutable() { return true; }
+
+    @Override
+    public boolean isTiled() { return false; }
+
+    /** Backing arrays, for TrackCache; callers must not modify them. */
+    byte[] cells() { return cells; }
+    int[] weights() { return weights; }
+}
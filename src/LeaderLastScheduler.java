@@ -0,0 +1,33 @@
+import java.util.Arrays;
+
+/**
+ * LeaderLastScheduler
+ * -------------------
+ * Cars furthest from the finish (highest weight) move first and the
+ * leader moves last, so trailing cars get the first pick of the track.
+ * Ties go to the car earlier in the roster. O(n log n) per turn.
+ */
+public class LeaderLastScheduler implements TurnScheduler {
+
+    private long[] keys = new long[0];
+
+    @Override
+    public void schedule(Car[] cars, Racetrack track, int[] order) {
+        if (keys.length != cars.length) {
+            keys = new long[cars.length];
+        }
+
+        for (int i = 0; i < cars.length; i++) {
+            Car car = cars[i];
+            car.updateWeightPosition(track);
+            // highest weight first: sort on the complement of the weight
+            long weight = Integer.MAX_VALUE - car.getWeightPosition();
+            keys[i] = (weight << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        for (int i = 0; i < order.length; i++) {
+            order[i] = (int) keys[i];
+        }
+    }
+}
@@ -0,0 +1,182 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * LineOfSightIndex
+ * ----------------
+ * Precomputed static line checks for one track and one MoveSet.
+ * For every cell and every offset of the move set it records two bits:
+ *  - clear:  the Bresenham line hits no wall and stays on the grid
+ *            (up to its end, or up to the first finish cell)
+ *  - finish: the line reaches a finish cell before its end
+ *
+ * Only the static part is stored; cars still have to be checked along
+ * the line each turn. The grid is split into square regions that are
+ * built the first time a car looks something up there, and no more
+ * regions are built once the memory budget is used up (lookups there
+ * return UNKNOWN and callers walk the line themselves).
+ *
+ * Safe to share between threads: a region is published atomically, and
+ * two threads building the same region at once just compute it twice.
+ */
+public class LineOfSightIndex {
+
+    /** No data for this cell (memory budget reached); walk the line. */
+    public static final int UNKNOWN = -1;
+
+    /** The line hits a wall or leaves the grid. */
+    public static final int BLOCKED = 0;
+
+    /** The line reaches its end without hitting anything static. */
+    public static final int CLEAR = 1;
+
+    /** The line reaches a finish cell first; cells after it don't matter. */
+    public static final int CLEAR_TO_FINISH = 2;
+
+    /** Regions are REGION_SIZE x REGION_SIZE cells. */
+    private static final int REGION_SHIFT = 5;
+    private static final int REGION_SIZE = 1 << REGION_SHIFT;
+
+    private final Racetrack track;
+    private final MoveSet moves;
+    private final long maxBytes;
+
+    /** 64-bit words per offset bitset (clear bits, then finish bits). */
+    private final int wordsPerSet;
+    private final int wordsPerCell;
+
+    private final int regionCols;
+    private final AtomicReferenceArray<long[]> regions;
+    private final AtomicLong bytesUsed = new AtomicLong();
+
+    /**
+     * @param maxBytes memory budget for all regions of this index
+     */
+    public LineOfSightIndex(Racetrack track, MoveSet moves, long maxBytes) {
+        this.track = track;
+        this.moves = moves;
+        this.maxBytes = maxBytes;
+
+        this.wordsPerSet = (moves.size() + 63) >>> 6;
+        this.wordsPerCell = wordsPerSet * 2;
+
+        int regionRows = (track.height() + REGION_SIZE - 1) >> REGION_SHIFT;
+        this.regionCols = (track.width() + REGION_SIZE - 1) >> REGION_SHIFT;
+        this.regions = new AtomicReferenceArray<>(regionRows * regionCols);
+    }
+
+    public MoveSet getMoveSet() { return moves; }
+
+    /** @return bytes currently held by built regions */
+    public long getBytesUsed() { return bytesUsed.get(); }
+
+    /**
+     * Drop the regions holding lines that may pass through (row,col), after
+     * Racetrack.setCell() changed it; they are rebuilt on next lookup.
+     */
+    void invalidate(int row, int col) {
+        int reachRows = 0;
+        int reachCols = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            reachRows = Math.max(reachRows, Math.abs(moves.rowOffset(i)));
+            reachCols = Math.max(reachCols, Math.abs(moves.colOffset(i)));
+        }
+
+        int top = Math.max(0, row - reachRows) >> REGION_SHIFT;
+        int bottom = Math.min(track.height() - 1, row + reachRows) >> REGION_SHIFT;
+        int left = Math.max(0, col - reachCols) >> REGION_SHIFT;
+        int right = Math.min(track.width() - 1, col + reachCols) >> REGION_SHIFT;
+        long bytes = (long) REGION_SIZE * REGION_SIZE * wordsPerCell * 8;
+
+        for (int rr = top; rr <= bottom; rr++) {
+            for (int rc = left; rc <= right; rc++) {
+                if (regions.getAndSet(rr * regionCols + rc, null) != null) {
+                    bytesUsed.addAndGet(-bytes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Static check of the line from (row,col) along moves offset i.
+     * @return BLOCKED, CLEAR, CLEAR_TO_FINISH or UNKNOWN
+     */
+    public int lookup(int row, int col, int i) {
+        int regionIndex = (row >> REGION_SHIFT) * regionCols + (col >> REGION_SHIFT);
+        long[] region = regions.get(regionIndex);
+        if (region == null) {
+            region = buildRegion(regionIndex);
+            if (region == null) return UNKNOWN;
+        }
+
+        int local = ((row & (REGION_SIZE - 1)) << REGION_SHIFT) | (col & (REGION_SIZE - 1));
+        int base = local * wordsPerCell;
+        int word = i >>> 6;
+        long bit = 1L << (i & 63);
+
+        if ((region[base + word] & bit) == 0) return BLOCKED;
+        if ((region[base + wordsPerSet + word] & bit) != 0) return CLEAR_TO_FINISH;
+        return CLEAR;
+    }
+
+    private long[] buildRegion(int regionIndex) {
+        long bytes = (long) REGION_SIZE * REGION_SIZE * wordsPerCell * 8;
+        if (bytesUsed.addAndGet(bytes) > maxBytes) {
+            bytesUsed.addAndGet(-bytes);
+            return null;
+        }
+
+        long[] region = new long[REGION_SIZE * REGION_SIZE * wordsPerCell];
+        int top = (regionIndex / regionCols) << REGION_SHIFT;
+        int left = (regionIndex % regionCols) << REGION_SHIFT;
+        PathCursor cursor = new PathCursor();
+
+        for (int lr = 0; lr < REGION_SIZE; lr++) {
+            int r = top + lr;
+            if (r >= track.height()) break;
+            for (int lc = 0; lc < REGION_SIZE; lc++) {
+                int c = left + lc;
+                if (c >= track.width()) break;
+                if (track.isWallAt(track.index(r, c))) continue;
+
+                int base = ((lr << REGION_SHIFT) | lc) * wordsPerCell;
+                for (int i = 0; i < moves.size(); i++) {
+                    int sight = trace(cursor, r, c, r + moves.rowOffset(i), c + moves.colOffset(i));
+                    long bit = 1L << (i & 63);
+                    if (sight != BLOCKED) region[base + (i >>> 6)] |= bit;
+                    if (sight == CLEAR_TO_FINISH) region[base + wordsPerSet + (i >>> 6)] |= bit;
+                }
+            }
+        }
+
+        if (!regions.compareAndSet(regionIndex, null, region)) {
+            // another thread published this region first
+            bytesUsed.addAndGet(-bytes);
+            return regions.get(regionIndex);
+        }
+        return region;
+    }
+
+    /**
+     * Walk one line the same way AgileCar does, ignoring cars. Terrain the
+     * car can't pay for within its max speed blocks the line too, except
+     * on the first cell, which is always entered.
+     */
+    private int trace(PathCursor cursor, int r0, int c0, int r1, int c1) {
+        int budget = moves.getMaxSpeed();
+        boolean first = true;
+        cursor.reset(r0, c0, r1, c1);
+        while (cursor.next()) {
+            int r = cursor.row();
+            int c = cursor.col();
+            if (track.isOutOfBounds(r, c)) return BLOCKED;
+            int idx = track.index(r, c);
+            if (track.isWallAt(idx)) return BLOCKED;
+            budget -= track.costAt(idx);
+            if (budget < 0 && !first) return BLOCKED;
+            first = false;
+            if (track.isFinishAt(idx)) return CLEAR_TO_FINISH;
+        }
+        return CLEAR;
+    }
+}
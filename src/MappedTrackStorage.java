@@ -0,0 +1,79 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * MappedTrackStorage
+ * ------------------
+ * Writable TrackStorage over the cell and weight sections of a compiled
+ * track file, memory-mapped in CHUNK_BYTES pieces. Used by
+ * TrackCache.compile() to compute weights for tracks larger than the
+ * heap: the pages live in the OS file cache, not on the Java heap.
+ *
+ * Not thread-safe; one compile owns it.
+ */
+final class MappedTrackStorage implements TrackStorage {
+
+    /** Bytes per mapping; a multiple of 4 so no weight spans two. */
+    private static final int CHUNK_SHIFT = 30;
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    private final MappedByteBuffer[] cells;
+    private final MappedByteBuffer[] weights;
+
+    /**
+     * Map cellCount cells at cellsOffset and cellCount big-endian int
+     * weights at weightsOffset, growing the file if it is shorter.
+     */
+    MappedTrackStorage(FileChannel channel, long cellsOffset, long weightsOffset, int cellCount)
+            throws IOException {
+        this.cells = map(channel, cellsOffset, cellCount);
+        this.weights = map(channel, weightsOffset, (long) cellCount * 4);
+    }
+
+    @Override
+    public byte cell(int idx) {
+        return cells[idx >>> CHUNK_SHIFT].get(idx & CHUNK_MASK);
+    }
+
+    @Override
+    public int weight(int idx) {
+        long at = (long) idx << 2;
+        return weights[(int) (at >>> CHUNK_SHIFT)].getInt((int) at & CHUNK_MASK);
+    }
+
+    @Override
+    public void setCell(int idx, byte cell) {
+        cells[idx >>> CHUNK_SHIFT].put(idx & CHUNK_MASK, cell);
+    }
+
+    @Override
+    public void setWeight(int idx, int weight) {
+        long at = (long) idx << 2;
+        weights[(int) (at >>> CHUNK_SHIFT)].putInt((int) at & CHUNK_MASK, weight);
+    }
+
+    @Override
+    public boolean isMutable() { return true; }
+
+    @Override
+    public boolean isTiled() { return false; }
+
+    /** Write every changed page back to the file. */
+    void force() {
+        for (MappedByteBuffer chunk : cells) chunk.force();
+        for (MappedByteBuffer chunk : weights) chunk.force();
+    }
+
+    private static MappedByteBuffer[] map(FileChannel channel, long offset, long length)
+            throws IOException {
+        int count = (int) ((length + CHUNK_MASK) >>> CHUNK_SHIFT);
+        MappedByteBuffer[] chunks = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long from = (long) i << CHUNK_SHIFT;
+            long size = Math.min(1L << CHUNK_SHIFT, length - from);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, offset + from, size);
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * MoveEvent
+ * ---------
+ * A car moved without hitting anything: it reached its destination, or
+ * rough terrain stopped it short (isStoppedEarly()).
+ */
+public class MoveEvent extends RaceEvent {
+
+    private boolean stoppedEarly;
+
+    void setStoppedEarly(boolean stoppedEarly) {
+        this.stoppedEarly = stoppedEarly;
+    }
+
+    /** @return true if terrain stopped the car before its destination */
+    public boolean isStoppedEarly() { return stoppedEarly; }
+}
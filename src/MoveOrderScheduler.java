@@ -0,0 +1,83 @@
+import java.util.Arrays;
+
+/**
+ * MoveOrderScheduler
+ * ------------------
+ * Default ordering, the same as RaceGame always used:
+ *  1. moveOrder (lower first)
+ *  2. weightPosition (lower first)
+ *
+ * RaceSimulator gives every car its own moveOrder, so rule 2 never
+ * decides anything and the order is fixed for the whole race; the
+ * scheduler notices that on the first turn and stops sorting. Rosters
+ * with shared moveOrders are sorted every turn in O(n log n) on packed
+ * long keys.
+ *
+ * That shortcut is remembered per roster: handing schedule() a different
+ * cars array starts over. It is still mutable state, so one instance must
+ * not be shared by races running on different threads at the same time.
+ */
+public class MoveOrderScheduler implements TurnScheduler {
+
+    /** Bits holding the previous position, which keeps ties stable. */
+    private static final int POSITION_BITS = 20;
+
+    /** Roster the fixed order was worked out for. */
+    private Car[] roster;
+    private boolean fixed;
+
+    /** Sort keys and the order being rearranged, reused every turn. */
+    private long[] keys = new long[0];
+    private int[] previous = new int[0];
+
+    public MoveOrderScheduler() {
+    }
+
+    /** Scheduler with its scratch arrays already sized for a roster. */
+    MoveOrderScheduler(int cars) {
+        keys = new long[cars];
+        previous = new int[cars];
+    }
+
+    @Override
+    public void schedule(Car[] cars, Racetrack track, int[] order) {
+        if (cars != roster) {
+            roster = cars;
+            fixed = false;
+        }
+        if (fixed) return;
+
+        if (order.length >= 1 << POSITION_BITS) {
+            throw new IllegalArgumentException("Too many cars for MoveOrderScheduler.");
+        }
+        if (keys.length != order.length) {
+            keys = new long[order.length];
+            previous = new int[order.length];
+        }
+
+        // update weights at current positions
+        for (Car c : cars) {
+            c.updateWeightPosition(track);
+        }
+
+        for (int i = 0; i < order.length; i++) {
+            Car car = cars[order[i]];
+            keys[i] = ((long) car.getMoveOrder() << 40)
+                    | ((long) Math.min(car.getWeightPosition(), (1 << 20) - 1) << POSITION_BITS)
+                    | i;
+        }
+        Arrays.sort(keys);
+
+        System.arraycopy(order, 0, previous, 0, order.length);
+        boolean unique = true;
+        for (int i = 0; i < order.length; i++) {
+            order[i] = previous[(int) (keys[i] & ((1 << POSITION_BITS) - 1))];
+            if (i > 0 && cars[order[i]].getMoveOrder() == cars[order[i - 1]].getMoveOrder()) {
+                unique = false;
+            }
+        }
+
+        // distinct moveOrders never change during a race
+        fixed = unique;
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * MoveOutcome
+ * -----------
+ * What happened the last time a car took its turn in Car.move().
+ */
+public enum MoveOutcome {
+
+    /** The car did not move (no destination, same cell, or illegal speed). */
+    NONE,
+
+    /** The car reached its destination without hitting anything. */
+    MOVED,
+
+    /** The path left the grid; the car stopped on its last safe cell. */
+    BOUNDARY,
+
+    /** The path hit a wall; the car stopped on its last safe cell. */
+    WALL,
+
+    /** The path hit another car; the car stopped on its last safe cell. */
+    CAR,
+
+    /** The path crossed the finish line; the car won. */
+    FINISH,
+
+    /**
+     * The next cell's terrain cost more than the car had left this turn;
+     * it stopped on its last cell. Not a collision, and never on the
+     * first cell of a move, so terrain never blocks a car outright.
+     */
+    TERRAIN;
+
+    /** @return true for the three collision outcomes */
+    public boolean isCollision() {
+        return this == BOUNDARY || this == WALL || this == CAR;
+    }
+}
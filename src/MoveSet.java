@@ -0,0 +1,92 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MoveSet
+ * -------
+ * Every legal (dRow, dCol) offset for one velocity profile
+ * (rowVelocity, colVelocity, maxSpeed), excluding (0,0).
+ *  - Built once per profile and shared by every car that uses it
+ *  - Offsets are kept in two primitive arrays, in the same order the
+ *    cars' nested dr/dc loops used (dr ascending, then dc ascending), so
+ *    "first strictly better move wins" ties resolve exactly as before
+ *  - allows() is the single speed-limit check for moves
+ *
+ * Instances are immutable and safe to share between threads.
+ */
+public final class MoveSet {
+
+    private static final ConcurrentHashMap<Long, MoveSet> CACHE = new ConcurrentHashMap<>();
+
+    private final int rowVelocity;
+    private final int colVelocity;
+    private final int maxSpeed;
+
+    private final int[] rowOffsets;
+    private final int[] colOffsets;
+
+    private MoveSet(int rowVelocity, int colVelocity, int maxSpeed) {
+        this.rowVelocity = rowVelocity;
+        this.colVelocity = colVelocity;
+        this.maxSpeed = maxSpeed;
+
+        int count = 0;
+        for (int dr = -rowVelocity; dr <= rowVelocity; dr++) {
+            for (int dc = -colVelocity; dc <= colVelocity; dc++) {
+                if (isLegal(dr, dc)) count++;
+            }
+        }
+
+        rowOffsets = new int[count];
+        colOffsets = new int[count];
+        int i = 0;
+        for (int dr = -rowVelocity; dr <= rowVelocity; dr++) {
+            for (int dc = -colVelocity; dc <= colVelocity; dc++) {
+                if (isLegal(dr, dc)) {
+                    rowOffsets[i] = dr;
+                    colOffsets[i] = dc;
+                    i++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Shared move set for a velocity profile.
+     */
+    public static MoveSet of(int rowVelocity, int colVelocity, int maxSpeed) {
+        long key = ((long) (rowVelocity & 0xFFFFF) << 40)
+                | ((long) (colVelocity & 0xFFFFF) << 20)
+                | (maxSpeed & 0xFFFFF);
+        return CACHE.computeIfAbsent(key, k -> new MoveSet(rowVelocity, colVelocity, maxSpeed));
+    }
+
+    private boolean isLegal(int dRow, int dCol) {
+        if (dRow == 0 && dCol == 0) return false;
+        return allows(dRow, dCol);
+    }
+
+    /**
+     * Speed limits: |dRow| <= rowVelocity, |dCol| <= colVelocity and
+     * |dRow| + |dCol| <= maxSpeed. (0,0) is allowed, it means "stay".
+     */
+    public boolean allows(int dRow, int dCol) {
+        int ar = Math.abs(dRow);
+        int ac = Math.abs(dCol);
+        return ar <= rowVelocity && ac <= colVelocity && ar + ac <= maxSpeed;
+    }
+
+    /** @return number of offsets */
+    public int size() { return rowOffsets.length; }
+
+    public int rowOffset(int i) { return rowOffsets[i]; }
+    public int colOffset(int i) { return colOffsets[i]; }
+
+    public int getRowVelocity() { return rowVelocity; }
+    public int getColVelocity() { return colVelocity; }
+    public int getMaxSpeed() { return maxSpeed; }
+
+    @Override
+    public String toString() {
+        return "MoveSet(" + rowVelocity + "," + colVelocity + "," + maxSpeed + ")";
+    }
+}
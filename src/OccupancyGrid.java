@@ -0,0 +1,165 @@
+import java.util.Arrays;
+
+/**
+ * OccupancyGrid
+ * -------------
+ * Spatial index of which car sits on which track cell.
+ *  - One slot per cell, same row-major layout as Racetrack
+ *  - Cars attached to the grid report every position change through
+ *    Car.setPosition, so lookups never go stale
+ *  - carAt() replaces scanning the whole Car[] for every path cell
+ *
+ * Move rules never let two cars share a cell, so each slot holds at most
+ * one car. On tracks with more than DENSE_LIMIT cells (tiled tracks
+ * larger than the heap) a small open-addressing table keyed by cell
+ * index replaces the slot array.
+ */
+public class OccupancyGrid {
+
+    /** Largest track that gets one slot per cell. */
+    private static final int DENSE_LIMIT = 1 << 24;
+
+    private final Racetrack track;
+
+    /** Car on each cell, or null when the cell is free; null when sparse. */
+    private final Car[] slots;
+
+    /** Sparse mode: cell index per table slot (-1 = empty), and its car. */
+    private int[] keys;
+    private Car[] values;
+    private int size;
+
+    /**
+     * Build a grid for the given track and attach every car in the roster.
+     */
+    public OccupancyGrid(Racetrack track, Car[] cars) {
+        this.track = track;
+        long cells = (long) track.height() * track.width();
+        if (cells <= DENSE_LIMIT) {
+            this.slots = new Car[(int) cells];
+        } else {
+            this.slots = null;
+            this.keys = new int[64];
+            this.values = new Car[64];
+            Arrays.fill(keys, -1);
+        }
+
+        for (Car car : cars) {
+            if (car != null) {
+                add(car);
+            }
+        }
+    }
+
+    /**
+     * Attach a car to this grid at its current position.
+     */
+    public void add(Car car) {
+        car.setOccupancy(this);
+        if (!track.isOutOfBounds(car.getRow(), car.getCol())) {
+            put(track.index(car.getRow(), car.getCol()), car);
+        }
+    }
+
+    /**
+     * Detach a car from this grid (for example when it leaves the race).
+     */
+    public void remove(Car car) {
+        clear(car, car.getRow(), car.getCol());
+        car.setOccupancy(null);
+    }
+
+    /** @return the car on (r,c), or null if the cell is free or off the track */
+    public Car carAt(int r, int c) {
+        if (track.isOutOfBounds(r, c)) return null;
+        return carAt(track.index(r, c));
+    }
+
+    /** @return the car on the cell with the given flat index, or null */
+    public Car carAt(int idx) {
+        if (slots != null) return slots[idx];
+
+        int mask = keys.length - 1;
+        for (int i = mix(idx) & mask; keys[i] != -1; i = (i + 1) & mask) {
+            if (keys[i] == idx) return values[i];
+        }
+        return null;
+    }
+
+    /**
+     * Called by Car.setPosition whenever an attached car changes cell.
+     */
+    void moved(Car car, int fromRow, int fromCol, int toRow, int toCol) {
+        clear(car, fromRow, fromCol);
+        if (!track.isOutOfBounds(toRow, toCol)) {
+            put(track.index(toRow, toCol), car);
+        }
+    }
+
+    private void clear(Car car, int r, int c) {
+        if (track.isOutOfBounds(r, c)) return;
+        int idx = track.index(r, c);
+        // only clear the slot if this car actually owns it
+        if (slots != null) {
+            if (slots[idx] == car) {
+                slots[idx] = null;
+            }
+            return;
+        }
+
+        int mask = keys.length - 1;
+        int i = mix(idx) & mask;
+        while (keys[i] != idx) {
+            if (keys[i] == -1) return;
+            i = (i + 1) & mask;
+        }
+        if (values[i] != car) return;
+
+        // backward-shift delete keeps every probe chain unbroken
+        size--;
+        int hole = i;
+        for (int j = (i + 1) & mask; keys[j] != -1; j = (j + 1) & mask) {
+            int home = mix(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        keys[hole] = -1;
+        values[hole] = null;
+    }
+
+    private void put(int idx, Car car) {
+        if (slots != null) {
+            slots[idx] = car;
+            return;
+        }
+
+        if (size * 2 >= keys.length) {
+            int[] oldKeys = keys;
+            Car[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new Car[oldKeys.length * 2];
+            Arrays.fill(keys, -1);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != -1) put(oldKeys[i], oldValues[i]);
+            }
+        }
+
+        int mask = keys.length - 1;
+        int i = mix(idx) & mask;
+        while (keys[i] != -1 && keys[i] != idx) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == -1) size++;
+        keys[i] = idx;
+        values[i] = car;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * PathCursor
+ * ----------
+ * Reusable Bresenham line walker.
+ *  - reset() aims the cursor from a start cell at an end cell
+ *  - next() steps to the following cell on the line (start excluded)
+ *  - row() / col() read the current cell
+ *
+ * The cursor keeps all of its state in primitive fields, so a car can
+ * hold one instance and walk any number of lines without allocating.
+ * Callers stop early simply by no longer calling next().
+ */
+public class PathCursor {
+
+    private int x;
+    private int y;
+    private int x1;
+    private int y1;
+
+    private int dx;
+    private int dy;
+    private int sx;
+    private int sy;
+    private int err;
+
+    private boolean done;
+
+    /**
+     * Start a new line from (startRow,startCol) to (endRow,endCol).
+     * The cursor sits on the start cell until next() is called.
+     */
+    public void reset(int startRow, int startCol, int endRow, int endCol) {
+        x = startRow;
+        y = startCol;
+        x1 = endRow;
+        y1 = endCol;
+
+        dx = Math.abs(x1 - x);
+        dy = Math.abs(y1 - y);
+        sx = (x < x1) ? 1 : -1;
+        sy = (y < y1) ? 1 : -1;
+        err = dx - dy;
+
+        done = (x == x1 && y == y1);
+    }
+
+    /**
+     * Advance to the next cell on the line.
+     * @return false once the end cell has already been reached
+     */
+    public boolean next() {
+        if (done) return false;
+
+        int e2 = err * 2;
+        if (e2 > -dy) {
+            err -= dy;
+            x += sx;
+        }
+        if (e2 < dx) {
+            err += dx;
+            y += sy;
+        }
+
+        done = (x == x1 && y == y1);
+        return true;
+    }
+
+    /** @return row of the current cell */
+    public int row() { return x; }
+
+    /** @return column of the current cell */
+    public int col() { return y; }
+}
@@ -0,0 +1,340 @@
+import java.util.Arrays;
+
+/**
+ * PlannerCar
+ * ----------
+ * CPU car that looks several turns ahead instead of one.
+ *  - A* search over landing cells, using the same move rules as
+ *    Car.move (Bresenham path, speed limits, stop before walls, the grid
+ *    edge and unaffordable terrain, win on the first finish cell crossed)
+ *  - Heuristic: the track weight divided by the most terrain cost a car
+ *    can spend in one turn, which never overestimates the turns left
+ *  - Other cars only matter for the first move: a first move whose path
+ *    crosses another car is never taken (Car.move would stop it there
+ *    with a collision); they will have moved by the time later moves
+ *    happen
+ *  - Each decision has a node budget and a time budget; when either runs
+ *    out, the car takes the first move towards the most promising cell
+ *    found so far
+ *
+ * All search storage (node pool, heap, transposition table) is primitive
+ * arrays kept per thread between decisions, so every planner deciding on
+ * a thread shares one set of grown buffers and a new car starts warm.
+ * The destination is returned packed (see Car.packDestination), so
+ * steady-state decisions don't allocate.
+ */
+public class PlannerCar extends Car {
+
+    private static final int DEFAULT_MAX_NODES = 20000;
+    private static final long DEFAULT_MAX_NANOS = 2_000_000L;
+
+    /** Heap entries pack f | h | node id into one long. */
+    private static final int NODE_BITS = 23;
+    private static final int H_BITS = 20;
+    private static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final int MAX_H = (1 << H_BITS) - 1;
+
+    private final int maxNodes;
+    private final long maxNanos;
+
+    /** Search storage of the deciding thread. */
+    private static final ThreadLocal<Search> SEARCH = ThreadLocal.withInitial(Search::new);
+
+    public PlannerCar(char id,
+                      int row,
+                      int col,
+                      int rowVel,
+                      int colVel,
+                      int maxSpeed,
+                      Racetrack track) {
+
+        this(id, row, col, rowVel, colVel, maxSpeed, track, DEFAULT_MAX_NODES, DEFAULT_MAX_NANOS);
+    }
+
+    /**
+     * @param maxNodes nodes expanded per decision at most
+     * @param maxNanos time spent per decision at most, in nanoseconds
+     */
+    public PlannerCar(char id,
+                      int row,
+                      int col,
+                      int rowVel,
+                      int colVel,
+                      int maxSpeed,
+                      Racetrack track,
+                      int maxNodes,
+                      long maxNanos) {
+
+        super(id, row, col, rowVel, colVel, maxSpeed, track);
+        this.maxNodes = maxNodes;
+        this.maxNanos = maxNanos;
+    }
+
+    @Override
+    public Position chooseDestination(Racetrack track, Car[] cars) {
+        return toPosition(choosePackedDestination(track, cars));
+    }
+
+    @Override
+    protected long choosePackedDestination(Racetrack track, Car[] cars) {
+        // elapsed-time check: nanoTime() has an arbitrary origin, so only
+        // differences between two readings are meaningful
+        long startNanos = System.nanoTime();
+        MoveSet moves = getMoveSet();
+        int reach = reachPerTurn(track, moves);
+        PathCursor cursor = getCursor();
+
+        int row = getRow();
+        int col = getCol();
+        int start = track.index(row, col);
+
+        Search search = SEARCH.get();
+        search.reset();
+
+        // first move: other cars are where they are now
+        for (int i = 0; i < moves.size(); i++) {
+            int landing = firstLanding(track, cars, cursor, row, col,
+                    row + moves.rowOffset(i), col + moves.colOffset(i));
+            if (landing != start) {
+                search.push(track, landing, 1, i, reach);
+            }
+        }
+
+        int expanded = 0;
+        while (search.heapSize > 0) {
+            if (expanded >= maxNodes) break;
+            if ((expanded & 63) == 0 && System.nanoTime() - startNanos > maxNanos) break;
+
+            int node = (int) (search.pop() & MAX_NODE_ID);
+            int cell = search.nodeCell[node];
+            if (search.lookup(cell) != node) continue; // a cheaper route replaced it
+
+            if (track.isFinishAt(cell)) {
+                return destinationOf(search.nodeFirst[node]);
+            }
+            expanded++;
+
+            int r = track.rowOf(cell);
+            int c = track.colOf(cell);
+            for (int i = 0; i < moves.size(); i++) {
+                int landing = track.traceMove(cursor, r, c, r + moves.rowOffset(i), c + moves.colOffset(i),
+                        getMaxSpeed());
+                if (landing != cell) {
+                    search.push(track, landing, search.nodeG[node] + 1, search.nodeFirst[node], reach);
+                }
+            }
+        }
+
+        // anytime fallback: head for the closest-looking cell found
+        if (search.bestNode < 0) return packDestination(row, col);
+        return destinationOf(search.nodeFirst[search.bestNode]);
+    }
+
+    /**
+     * Most weight one move can cover: its Chebyshev (8-neighbor) steps
+     * times the dearest terrain, but never more than the speed budget,
+     * or one dear cell when that is the whole move.
+     */
+    private int reachPerTurn(Racetrack track, MoveSet moves) {
+        int reach = 1;
+        for (int i = 0; i < moves.size(); i++) {
+            reach = Math.max(reach, Math.max(Math.abs(moves.rowOffset(i)), Math.abs(moves.colOffset(i))));
+        }
+        int maxCost = track.maxTerrainCost();
+        return Math.max(1, Math.min(reach * maxCost, Math.max(getMaxSpeed(), maxCost)));
+    }
+
+    private long destinationOf(int move) {
+        MoveSet moves = getMoveSet();
+        return packDestination(getRow() + moves.rowOffset(move), getCol() + moves.colOffset(move));
+    }
+
+    /**
+     * Landing cell of the first move, or the car's own cell when another
+     * car is in the way (the move would end in a collision, and the
+     * destination returned for it would not be its landing cell).
+     */
+    private int firstLanding(Racetrack track, Car[] cars, PathCursor cursor,
+                             int row, int col, int destRow, int destCol) {
+        int from = track.index(row, col);
+        int landing = from;
+        int budget = getMaxSpeed();
+        cursor.reset(row, col, destRow, destCol);
+
+        while (cursor.next()) {
+            int r = cursor.row();
+            int c = cursor.col();
+            if (track.isOutOfBounds(r, c)) break;
+
+            int idx = track.index(r, c);
+            if (track.isWallAt(idx)) break;
+
+            budget -= track.costAt(idx);
+            if (budget < 0 && landing != from) break;
+            if (findCarAt(cars, r, c) != null) return from;
+
+            landing = idx;
+            if (track.isFinishAt(idx)) break;
+        }
+        return landing;
+    }
+
+    // -------- search storage --------
+
+    /** Node pool, open set and transposition table of one thread. */
+    private static final class Search {
+
+        // node pool
+        private int[] nodeCell = new int[256];
+        private int[] nodeG = new int[256];
+        private int[] nodeFirst = new int[256];
+        private int nodeCount;
+
+        // open set: binary min-heap
+        private long[] heap = new long[256];
+        private int heapSize;
+
+        // transposition table: cell -> best node, cleared by bumping stamp
+        private int[] tableKeys = new int[1024];
+        private int[] tableNodes = new int[1024];
+        private int[] tableStamps = new int[1024];
+        private int tableSize;
+        private int stamp = 1;
+
+        // best fallback seen in the current search
+        private int bestNode;
+        private int bestH;
+
+        void reset() {
+            nodeCount = 0;
+            heapSize = 0;
+            tableSize = 0;
+            bestNode = -1;
+            bestH = Integer.MAX_VALUE;
+
+            stamp++;
+            if (stamp == 0) {
+                // stamps wrapped around: really clear the table once
+                Arrays.fill(tableStamps, 0);
+                stamp = 1;
+            }
+        }
+
+        /**
+         * Record a route to cell with g turns, unless an equal or cheaper one
+         * is already known.
+         */
+        void push(Racetrack track, int cell, int g, int firstMove, int reach) {
+            int w = track.weightAt(cell);
+            if (w >= Racetrack.WALL_WEIGHT) return; // cut off from every finish
+
+            int existing = lookup(cell);
+            if (existing >= 0 && nodeG[existing] <= g) return;
+            if (nodeCount > MAX_NODE_ID) return;
+
+            int h = Math.min(MAX_H, (w + reach - 1) / reach);
+            int f = Math.min(MAX_H, g + h);
+
+            if (nodeCount == nodeCell.length) {
+                int n = nodeCount * 2;
+                nodeCell = Arrays.copyOf(nodeCell, n);
+                nodeG = Arrays.copyOf(nodeG, n);
+                nodeFirst = Arrays.copyOf(nodeFirst, n);
+            }
+            int node = nodeCount++;
+            nodeCell[node] = cell;
+            nodeG[node] = g;
+            nodeFirst[node] = firstMove;
+            store(cell, node);
+
+            if (h < bestH || (h == bestH && g < nodeG[bestNode])) {
+                bestH = h;
+                bestNode = node;
+            }
+
+            heapPush(((long) f << (H_BITS + NODE_BITS)) | ((long) h << NODE_BITS) | node);
+        }
+
+        int lookup(int cell) {
+            int mask = tableKeys.length - 1;
+            for (int i = mix(cell) & mask; ; i = (i + 1) & mask) {
+                if (tableStamps[i] != stamp) return -1;
+                if (tableKeys[i] == cell) return tableNodes[i];
+            }
+        }
+
+        private void store(int cell, int node) {
+            if ((tableSize + 1) * 2 > tableKeys.length) {
+                growTable();
+            }
+            int mask = tableKeys.length - 1;
+            for (int i = mix(cell) & mask; ; i = (i + 1) & mask) {
+                if (tableStamps[i] != stamp) {
+                    tableStamps[i] = stamp;
+                    tableKeys[i] = cell;
+                    tableNodes[i] = node;
+                    tableSize++;
+                    return;
+                }
+                if (tableKeys[i] == cell) {
+                    tableNodes[i] = node;
+                    return;
+                }
+            }
+        }
+
+        private void growTable() {
+            int[] oldKeys = tableKeys;
+            int[] oldNodes = tableNodes;
+            int[] oldStamps = tableStamps;
+            int oldStamp = stamp;
+
+            int n = oldKeys.length * 2;
+            tableKeys = new int[n];
+            tableNodes = new int[n];
+            tableStamps = new int[n];
+            tableSize = 0;
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldStamps[i] == oldStamp) {
+                    store(oldKeys[i], oldNodes[i]);
+                }
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        private void heapPush(long entry) {
+            if (heapSize == heap.length) {
+                heap = Arrays.copyOf(heap, heapSize * 2);
+            }
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] <= entry) break;
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = entry;
+        }
+
+        long pop() {
+            long top = heap[0];
+            long last = heap[--heapSize];
+            int i = 0;
+            int half = heapSize >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < heapSize && heap[child + 1] < heap[child]) child++;
+                if (last <= heap[child]) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            if (heapSize > 0) heap[i] = last;
+            return top;
+        }
+    }
+}
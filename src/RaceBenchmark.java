@@ -0,0 +1,286 @@
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * RaceBenchmark
+ * -------------
+ * Micro-benchmarks for the racetrack hot paths on generated tracks:
+ *  - Racetrack construction (includes computeWeights)
+ *  - Racetrack.getPath
+ *  - SportsCar.chooseDestination / AgileCar.chooseDestination
+ *  - RaceSimulator.playTurn (Car.move for every car)
+ *  - a full headless race
+ *
+ * Each benchmark is warmed up, then timed, and reports ns/op together
+ * with bytes allocated per op (read from the JVM's per-thread
+ * allocation counter, like a GC profiler would).
+ *
+ * With -alloc, only a self-check runs instead: one warmed-up race per
+ * size and car count (SportsCars, AgileCars and PlannerCars), reporting
+ * the bytes allocated per turn (mean and worst) from
+ * RaceMetrics.allocatedBytes(). Steady-state turns must not allocate, so
+ * the check exits with status 1 if any turn did.
+ *
+ * Usage: java RaceBenchmark [size ...] [-cars n ...] [-ms millis] [-alloc]
+ * Defaults: sizes 10 64 256 1024, cars 3 100, 1000 ms per benchmark;
+ * they finish in about a minute within a 256 MB heap. Larger runs are
+ * opt-in: "4096 -cars 1000" needs about 512 MB (-Xmx512m).
+ *
+ * The same paths (plus PlannerCar) as JMH benchmarks, for runs with
+ * -prof gc: see jmh/pom.xml.
+ */
+public class RaceBenchmark {
+
+    private static final long SEED = 42L;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /** Results are folded in here so the JIT cannot drop the work. */
+    private static long blackhole;
+
+    private static long measureMillis = 1000;
+
+    /** Turns per race in the allocation self-check. */
+    private static final int ALLOC_CHECK_TURNS = 1000;
+
+    /** Races run before the measured one, until the JIT has settled. */
+    private static final int ALLOC_CHECK_WARMUP = 3;
+
+    /** PlannerCar node budget in the self-check (no time budget, so runs repeat exactly). */
+    private static final int ALLOC_CHECK_NODES = 2000;
+
+    public static void main(String[] args) {
+        int[] sizes = { 10, 64, 256, 1024 };
+        int[] carCounts = { 3, 100 };
+
+        IntList sizeArgs = new IntList();
+        IntList carArgs = new IntList();
+        IntList target = sizeArgs;
+        boolean allocCheck = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-alloc")) {
+                allocCheck = true;
+            } else if (args[i].equals("-cars")) {
+                target = carArgs;
+            } else if (args[i].equals("-ms")) {
+                measureMillis = Long.parseLong(args[++i]);
+            } else {
+                target.add(Integer.parseInt(args[i]));
+            }
+        }
+        if (sizeArgs.size > 0) sizes = sizeArgs.toArray();
+        if (carArgs.size > 0) carCounts = carArgs.toArray();
+
+        if (allocCheck) {
+            if (!checkAllocation(sizes, carCounts)) System.exit(1);
+            return;
+        }
+
+        System.out.printf("%-44s %14s %14s%n", "benchmark", "ns/op", "bytes/op");
+
+        for (int size : sizes) {
+            char[][] grid = TrackGenerator.generate(size, size, 0.03, SEED);
+            run("construct " + size + "x" + size, i -> new Racetrack(grid).height());
+
+            Racetrack track = new Racetrack(grid);
+            benchPath(track);
+
+            for (int carCount : carCounts) {
+                int cells = (size - 2) * (size - 2);
+                if (carCount > cells / 2) continue;
+                benchCars(track, carCount);
+            }
+        }
+
+        System.out.println("(ignore) " + blackhole);
+    }
+
+    private static void benchPath(Racetrack track) {
+        Random random = new Random(SEED);
+        int n = 1024;
+        Position[] from = new Position[n];
+        Position[] to = new Position[n];
+        for (int i = 0; i < n; i++) {
+            int r = 1 + random.nextInt(track.height() - 2);
+            int c = 1 + random.nextInt(track.width() - 2);
+            from[i] = new Position(r, c);
+            to[i] = new Position(Math.max(0, Math.min(track.height() - 1, r + random.nextInt(7) - 3)),
+                                 Math.max(0, Math.min(track.width() - 1, c + random.nextInt(7) - 3)));
+        }
+        String label = track.height() + "x" + track.width();
+        run("getPath " + label, i -> track.getPath(from[i & (n - 1)], to[i & (n - 1)]).size());
+
+        PathCursor cursor = new PathCursor();
+        run("PathCursor " + label, i -> {
+            Position a = from[i & (n - 1)];
+            Position b = to[i & (n - 1)];
+            cursor.reset(a.getRow(), a.getCol(), b.getRow(), b.getCol());
+            int steps = 0;
+            while (cursor.next()) steps++;
+            return steps;
+        });
+    }
+
+    private static void benchCars(Racetrack track, int carCount) {
+        String label = track.height() + "x" + track.width() + ", " + carCount + " cars";
+
+        Car[] sports = newRace(track, carCount, false);
+        new OccupancyGrid(track, sports);
+        run("SportsCar.chooseDestination " + label,
+                i -> sports[i % carCount].chooseDestination(track, sports).getRow());
+
+        Car[] agile = newRace(track, carCount, true);
+        new OccupancyGrid(track, agile);
+        run("AgileCar.chooseDestination " + label,
+                i -> agile[i % carCount].chooseDestination(track, agile).getRow());
+
+        RaceSimulator[] race = { new RaceSimulator(track, newRace(track, carCount, true), 1000) };
+        run("RaceSimulator.playTurn " + label, i -> {
+            if (race[0].playTurn()) {
+                race[0] = new RaceSimulator(track, newRace(track, carCount, true), 1000);
+            }
+            return race[0].getTurns();
+        });
+
+        run("full race " + label,
+                i -> new RaceSimulator(track, newRace(track, carCount, true), 1000).run().getTurns());
+    }
+
+    /**
+     * Allocation self-check: play one race per size and car count after
+     * warm-up races (so the JIT and the track's lazy caches are settled) and
+     * read the thread's allocation counter around every turn.
+     * @return false if any measured turn allocated
+     */
+    private static boolean checkAllocation(int[] sizes, int[] carCounts) {
+        if (RaceMetrics.allocatedBytes() < 0) {
+            System.out.println("Per-thread allocation counter not available on this JVM.");
+            return false;
+        }
+
+        boolean clean = true;
+        System.out.printf("%-44s %8s %14s %14s%n", "allocation check", "turns", "bytes/turn", "max bytes/turn");
+        for (int size : sizes) {
+            Racetrack track = new Racetrack(TrackGenerator.generate(size, size, 0.03, SEED));
+            for (int carCount : carCounts) {
+                int cells = (size - 2) * (size - 2);
+                if (carCount > cells / 2) continue;
+
+                for (int w = 0; w < ALLOC_CHECK_WARMUP; w++) {
+                    new RaceSimulator(track, newCheckRace(track, carCount), ALLOC_CHECK_TURNS).run();
+                }
+
+                RaceSimulator race = new RaceSimulator(track, newCheckRace(track, carCount), ALLOC_CHECK_TURNS);
+                long total = 0;
+                long max = 0;
+                int turns = 0;
+                boolean finished = false;
+                while (!finished) {
+                    long before = RaceMetrics.allocatedBytes();
+                    finished = race.playTurn();
+                    long bytes = RaceMetrics.allocatedBytes() - before;
+                    total += bytes;
+                    max = Math.max(max, bytes);
+                    turns++;
+                }
+
+                System.out.printf("%-44s %8d %14.1f %14d%n",
+                        size + "x" + size + ", " + carCount + " cars", turns, (double) total / turns, max);
+                if (total > 0) clean = false;
+            }
+        }
+
+        System.out.println(clean ? "OK: no turn allocated." : "FAILED: some turns allocated.");
+        return clean;
+    }
+
+    /** Sports, agile and planner cars in turn on the highest-weight cells. */
+    private static Car[] newCheckRace(Racetrack track, int carCount) {
+        StartGrid grid = new StartGrid(track);
+        Car[] cars = new Car[carCount];
+        for (int i = 0; i < carCount; i++) {
+            Position p = grid.next();
+            char id = (char) ('0' + i % 10);
+            if (i % 3 == 0) {
+                cars[i] = new SportsCar(id, p.getRow(), p.getCol(), 3, 3, 5, track);
+            } else if (i % 3 == 1) {
+                cars[i] = new AgileCar(id, p.getRow(), p.getCol(), 3, 3, 5, track);
+            } else {
+                cars[i] = new PlannerCar(id, p.getRow(), p.getCol(), 3, 3, 5, track,
+                        ALLOC_CHECK_NODES, Long.MAX_VALUE);
+            }
+        }
+        return cars;
+    }
+
+    /**
+     * Place cars on the highest-weight free cells, alternating strategies
+     * (or all SportsCars when mixed is false).
+     */
+    private static Car[] newRace(Racetrack track, int carCount, boolean mixed) {
+        StartGrid grid = new StartGrid(track);
+        Car[] cars = new Car[carCount];
+        for (int i = 0; i < carCount; i++) {
+            Position p = grid.next();
+            char id = (char) ('0' + i % 10);
+            if (mixed && i % 2 == 1) {
+                cars[i] = new AgileCar(id, p.getRow(), p.getCol(), 3, 3, 5, track);
+            } else {
+                cars[i] = new SportsCar(id, p.getRow(), p.getCol(), 3, 3, 5, track);
+            }
+        }
+        return cars;
+    }
+
+    /**
+     * Warm up for half the measure time, then time batches of ops until
+     * the measure time is used up.
+     */
+    private static void run(String name, IntUnaryOperator op) {
+        loop(op, measureMillis / 2);
+
+        long threadId = Thread.currentThread().getId();
+        long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long ops = loop(op, measureMillis);
+        long elapsed = System.nanoTime() - start;
+        long bytes = THREADS.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+        System.out.printf("%-44s %14.1f %14.1f%n", name, (double) elapsed / ops, (double) bytes / ops);
+    }
+
+    private static long loop(IntUnaryOperator op, long millis) {
+        long deadline = System.nanoTime() + millis * 1_000_000L;
+        long ops = 0;
+        int batch = 1;
+        long sink = 0;
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < batch; i++) {
+                sink += op.applyAsInt((int) (ops + i));
+            }
+            ops += batch;
+            if (batch < 1 << 16) batch <<= 1;
+        }
+        blackhole += sink;
+        return ops;
+    }
+
+    /** Tiny growable int list for argument parsing. */
+    private static class IntList {
+        private int[] data = new int[4];
+        private int size;
+
+        void add(int v) {
+            if (size == data.length) {
+                data = java.util.Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = v;
+        }
+
+        int[] toArray() {
+            return java.util.Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * RaceEvent
+ * ---------
+ * Common part of the events a car sends its RaceListeners: which car
+ * moved, where from, where it was headed and where it ended up.
+ * Fields are plain ints so filling one in costs nothing; the Position
+ * getters build new objects for callers that want them.
+ */
+public abstract class RaceEvent {
+
+    private Car car;
+    private int fromRow;
+    private int fromCol;
+    private int destRow;
+    private int destCol;
+    private int row;
+    private int col;
+
+    /** Fill in for the move that just ended; the car is at its landing cell. */
+    void set(Car car, int fromRow, int fromCol, int destRow, int destCol) {
+        this.car = car;
+        this.fromRow = fromRow;
+        this.fromCol = fromCol;
+        this.destRow = destRow;
+        this.destCol = destCol;
+        this.row = car.getRow();
+        this.col = car.getCol();
+    }
+
+    public Car getCar() { return car; }
+    public int getFromRow() { return fromRow; }
+    public int getFromCol() { return fromCol; }
+    public int getDestRow() { return destRow; }
+    public int getDestCol() { return destCol; }
+
+    /** Cell the car ended its move on. */
+    public int getRow() { return row; }
+    public int getCol() { return col; }
+
+    public Position getDestination() { return new Position(destRow, destCol); }
+    public Position getPosition() { return new Position(row, col); }
+}
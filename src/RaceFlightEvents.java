@@ -0,0 +1,138 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.Timespan;
+
+/**
+ * RaceFlightEvents
+ * ----------------
+ * Custom JDK Flight Recorder events matching RaceMetrics.
+ * They are off unless a recording enables them, e.g.
+ *   java -XX:StartFlightRecording:settings=profile ...
+ * and then show up under "Racetrack" in JDK Mission Control.
+ *
+ * Car and RaceSimulator emit them whether or not RaceMetrics are
+ * attached. Whether each event is enabled is cached in a volatile flag
+ * that is refreshed whenever a recording starts or stops, so with no
+ * recording a race pays one flag read per move and never builds an
+ * event object.
+ */
+public final class RaceFlightEvents {
+
+    private static volatile boolean turnEnabled;
+    private static volatile boolean decisionEnabled;
+    private static volatile boolean moveEnabled;
+
+    static {
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recordingStateChanged(Recording recording) {
+                refresh();
+            }
+        });
+        if (FlightRecorder.isInitialized()) refresh();
+    }
+
+    private RaceFlightEvents() {
+    }
+
+    /** Re-read the enabled state; only called once JFR is up. */
+    private static void refresh() {
+        turnEnabled = EventType.getEventType(Turn.class).isEnabled();
+        decisionEnabled = EventType.getEventType(Decision.class).isEnabled();
+        moveEnabled = EventType.getEventType(Move.class).isEnabled();
+    }
+
+    static boolean isTurnEnabled() { return turnEnabled; }
+    static boolean isDecisionEnabled() { return decisionEnabled; }
+    static boolean isMoveEnabled() { return moveEnabled; }
+
+    static void turn(int turn, int cars, long nanos, long allocatedBytes) {
+        Turn event = new Turn();
+        if (event.shouldCommit()) {
+            event.turn = turn;
+            event.cars = cars;
+            event.nanos = nanos;
+            event.allocatedBytes = allocatedBytes;
+            event.commit();
+        }
+    }
+
+    static void decision(Car car, long nanos) {
+        Decision event = new Decision();
+        if (event.shouldCommit()) {
+            event.strategy = car.getClass().getSimpleName();
+            event.carId = car.getIdNumber();
+            event.nanos = nanos;
+            event.commit();
+        }
+    }
+
+    static void move(Car car, MoveOutcome outcome, int cells) {
+        Move event = new Move();
+        if (event.shouldCommit()) {
+            event.carId = car.getIdNumber();
+            event.outcome = outcome.name();
+            event.cells = cells;
+            event.commit();
+        }
+    }
+
+    @Name("racetrack.Turn")
+    @Label("Race Turn")
+    @Category("Racetrack")
+    @Description("One turn of a race: every car moved once")
+    public static class Turn extends Event {
+        @Label("Turn")
+        int turn;
+
+        @Label("Cars")
+        int cars;
+
+        @Label("Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocatedBytes;
+    }
+
+    @Name("racetrack.Decision")
+    @Label("Car Decision")
+    @Category("Racetrack")
+    @Description("One chooseDestination call")
+    public static class Decision extends Event {
+        @Label("Strategy")
+        String strategy;
+
+        @Label("Car")
+        char carId;
+
+        @Label("Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+    }
+
+    @Name("racetrack.Move")
+    @Label("Car Move")
+    @Category("Racetrack")
+    @Description("Outcome of one Car.move")
+    public static class Move extends Event {
+        @Label("Car")
+        char carId;
+
+        @Label("Outcome")
+        String outcome;
+
+        @Label("Cells Walked")
+        int cells;
+    }
+}
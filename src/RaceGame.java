@@ -6,7 +6,7 @@ import java.util.Scanner;
  * Main driver:
  *  - Builds racetrack from track1.txt
  *  - Places cars at highest-weight starting positions
- *  - Runs race until a car wins
+ *  - Runs race until a car wins (turns are played by RaceSimulator)
  *  - Displays the winning car's path at the end.
  */
 public class RaceGame {
@@ -18,18 +18,13 @@ public class RaceGame {
         // Make sure track1.txt is in the project root (same folder as src).
         String fileName = "track1.txt";
 
-        Racetrack track = new Racetrack(fileName);
+        Racetrack track = TrackCache.load(fileName);
 
-        boolean[][] used = new boolean[track.height()][track.width()];
+        StartGrid grid = new StartGrid(track);
 
-        Position p1 = track.findHighestWeightStart(used);
-        used[p1.getRow()][p1.getCol()] = true;
-
-        Position p2 = track.findHighestWeightStart(used);
-        used[p2.getRow()][p2.getCol()] = true;
-
-        Position p3 = track.findHighestWeightStart(used);
-        used[p3.getRow()][p3.getCol()] = true;
+        Position p1 = grid.next();
+        Position p2 = grid.next();
+        Position p3 = grid.next();
 
         int rowVel = 3;
         int colVel = 3;
@@ -40,69 +35,24 @@ public class RaceGame {
         cars[1] = new AgileCar ('2', p2.getRow(), p2.getCol(), rowVel, colVel, maxSpeed, track);
         cars[2] = new UserCar  ('3', p3.getRow(), p3.getCol(), rowVel, colVel, maxSpeed, track, in);
 
-        Car winner = null;
-        boolean raceOver = false;
-
-        System.out.println("Starting Race!");
-        track.displayTrack(cars);
-
-        while (!raceOver) {
-
-            // update weights at current positions
-            for (Car c : cars) {
-                c.updateWeightPosition(track);
-            }
+        RaceSimulator race = new RaceSimulator(track, cars, Integer.MAX_VALUE);
+        race.addListener(new ConsoleRaceListener(System.out));
 
-            // sort cars by order, then by weightPosition
-            sortCars(cars);
+        TrackRenderer renderer = new TrackRenderer(track, System.out);
 
-            // each car moves in order
-            for (Car c : cars) {
-                String msg = c.move(track, cars);
-                if (!msg.isEmpty()) {
-                    System.out.println(msg);
-                }
-
-                if (c.isWinner()) {
-                    winner = c;
-                    raceOver = true;
-                    break;
-                }
-            }
+        System.out.println("Starting Race!");
+        renderer.render(cars);
 
-            track.displayTrack(cars);
+        while (!race.isOver()) {
+            race.playTurn();
+            renderer.render(cars);
         }
 
+        Car winner = race.getWinner();
         if (winner != null) {
             track.printWithWinningPath(winner.getPathHistory(), cars, winner);
         }
 
         in.close();
     }
-
-    /**
-     * Selection sort on cars:
-     * 1. moveOrder (lower first)
-     * 2. weightPosition (lower first)
-     */
-    private static void sortCars(Car[] cars) {
-        int n = cars.length;
-        for (int i = 0; i < n - 1; i++) {
-            int bestIndex = i;
-            for (int j = i + 1; j < n; j++) {
-                Car a = cars[j];
-                Car b = cars[bestIndex];
-
-                if (a.getMoveOrder() < b.getMoveOrder()) {
-                    bestIndex = j;
-                } else if (a.getMoveOrder() == b.getMoveOrder() &&
-                        a.getWeightPosition() < b.getWeightPosition()) {
-                    bestIndex = j;
-                }
-            }
-            Car temp = cars[i];
-            cars[i] = cars[bestIndex];
-            cars[bestIndex] = temp;
-        }
-    }
 }
@@ -0,0 +1,24 @@
+/**
+ * RaceListener
+ * ------------
+ * Typed events from Car.move, for code that wants to know what each move
+ * did (console output, statistics, ...). Register with
+ * RaceSimulator.addListener(); called on the simulation thread.
+ *
+ * Event objects are reused by the car for its next move, so a listener
+ * must copy anything it wants to keep instead of holding on to the event.
+ */
+public interface RaceListener {
+
+    /** A car moved all the way to its destination. */
+    default void onMove(MoveEvent event) {
+    }
+
+    /** A car was stopped by the grid edge, a wall or another car. */
+    default void onCollision(CollisionEvent event) {
+    }
+
+    /** A car crossed the finish line. */
+    default void onWin(WinEvent event) {
+    }
+}
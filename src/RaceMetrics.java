@@ -0,0 +1,192 @@
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RaceMetrics
+ * -----------
+ * Counters and histograms for where time goes during races:
+ *  - per-turn latency and bytes allocated per turn
+ *  - chooseDestination time per car class (strategy)
+ *  - Bresenham cells walked by Car.move
+ *  - collisions by type (boundary / wall / car) and wins
+ *
+ * Attach one with RaceSimulator.setMetrics(); with nothing attached the
+ * race only pays a null check per move. The matching RaceFlightEvents
+ * are emitted by Car and RaceSimulator themselves, so a JDK Flight
+ * Recorder recording sees races with or without metrics attached.
+ *
+ * All counters are thread-safe, so one instance can collect a whole
+ * tournament.
+ */
+public class RaceMetrics {
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private final LongAdder turns = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder cellsTraversed = new LongAdder();
+    private final LongAdder boundaryCollisions = new LongAdder();
+    private final LongAdder wallCollisions = new LongAdder();
+    private final LongAdder carCollisions = new LongAdder();
+    private final LongAdder wins = new LongAdder();
+    private final LongAdder terrainStops = new LongAdder();
+
+    private final Histogram turnNanos = new Histogram();
+    private final Histogram turnAllocatedBytes = new Histogram();
+    private final ConcurrentHashMap<String, Histogram> decisionNanos = new ConcurrentHashMap<>();
+
+    // -------- recording (called by RaceSimulator and Car) --------
+
+    /** Time one chooseDestination call took. */
+    void recordDecision(Car car, long nanos) {
+        String strategy = car.getClass().getSimpleName();
+        Histogram h = decisionNanos.get(strategy);
+        if (h == null) {
+            h = decisionNanos.computeIfAbsent(strategy, k -> new Histogram());
+        }
+        h.record(nanos);
+    }
+
+    /** Result of one Car.move. */
+    void recordMove(MoveOutcome outcome, int cells) {
+        moves.increment();
+        cellsTraversed.add(cells);
+        switch (outcome) {
+            case BOUNDARY: boundaryCollisions.increment(); break;
+            case WALL:     wallCollisions.increment(); break;
+            case CAR:      carCollisions.increment(); break;
+            case FINISH:   wins.increment(); break;
+            case TERRAIN:  terrainStops.increment(); break;
+            default:       break;
+        }
+    }
+
+    /** One whole turn of a race. */
+    void recordTurn(long nanos, long allocatedBytes) {
+        turns.increment();
+        turnNanos.record(nanos);
+        if (allocatedBytes >= 0) {
+            turnAllocatedBytes.record(allocatedBytes);
+        }
+    }
+
+    /** Bytes allocated so far by the calling thread, or -1 if unknown. */
+    static long allocatedBytes() {
+        if (THREADS == null) return -1;
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        try {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+                if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                    return threads;
+                }
+            }
+        } catch (RuntimeException | LinkageError e) {
+            // not a HotSpot-style JVM: allocation numbers are simply left out
+        }
+        return null;
+    }
+
+    // -------- reading --------
+
+    public long getTurns() { return turns.sum(); }
+    public long getMoves() { return moves.sum(); }
+    public long getCellsTraversed() { return cellsTraversed.sum(); }
+    public long getBoundaryCollisions() { return boundaryCollisions.sum(); }
+    public long getWallCollisions() { return wallCollisions.sum(); }
+    public long getCarCollisions() { return carCollisions.sum(); }
+    public long getWins() { return wins.sum(); }
+    public long getTerrainStops() { return terrainStops.sum(); }
+
+    public Histogram getTurnNanos() { return turnNanos; }
+    public Histogram getTurnAllocatedBytes() { return turnAllocatedBytes; }
+
+    /** @return decision-time histogram per car class name */
+    public Map<String, Histogram> getDecisionNanos() {
+        return new TreeMap<>(decisionNanos);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("turns=").append(getTurns())
+                .append(" moves=").append(getMoves())
+                .append(" cells=").append(getCellsTraversed())
+                .append(" collisions[boundary=").append(getBoundaryCollisions())
+                .append(" wall=").append(getWallCollisions())
+                .append(" car=").append(getCarCollisions())
+                .append("] terrainStops=").append(getTerrainStops())
+                .append(" wins=").append(getWins()).append('\n');
+        sb.append("  turn ns:          ").append(turnNanos).append('\n');
+        sb.append("  turn alloc bytes: ").append(turnAllocatedBytes);
+        for (Map.Entry<String, Histogram> e : getDecisionNanos().entrySet()) {
+            sb.append('\n').append("  decide ns ").append(e.getKey()).append(": ").append(e.getValue());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Histogram with power-of-two buckets: bucket b counts values in
+     * [2^(b-1), 2^b), bucket 0 counts zeros. Thread-safe and lock-free.
+     */
+    public static class Histogram {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(65);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long value) {
+            if (value < 0) value = 0;
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+            count.increment();
+            sum.add(value);
+
+            long m = max.get();
+            while (value > m && !max.compareAndSet(m, value)) {
+                m = max.get();
+            }
+        }
+
+        public long getCount() { return count.sum(); }
+        public long getMax() { return max.get(); }
+
+        public double getMean() {
+            long n = count.sum();
+            return (n == 0) ? 0.0 : (double) sum.sum() / n;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given percentile
+         * (0.0 to 100.0); accurate to within a factor of two.
+         */
+        public long getPercentile(double percentile) {
+            long n = count.sum();
+            if (n == 0) return 0;
+            long target = (long) Math.ceil(n * percentile / 100.0);
+            long seen = 0;
+            for (int b = 0; b < buckets.length(); b++) {
+                seen += buckets.get(b);
+                if (seen >= Math.max(1, target)) {
+                    return (b == 0) ? 0 : Math.min(max.get(), (b >= 63) ? Long.MAX_VALUE : (1L << b) - 1);
+                }
+            }
+            return max.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d mean=%.1f p50<=%d p99<=%d max=%d",
+                    getCount(), getMean(), getPercentile(50), getPercentile(99), getMax());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+/**
+ * RaceObserver
+ * ------------
+ * Hook for code that follows a RaceSimulator turn by turn
+ * (recorders, spectators, ...). Called on the simulation thread.
+ */
+public interface RaceObserver {
+
+    /**
+     * A car has just taken its move. Its last outcome, last destination
+     * and position describe what happened.
+     * @param carIndex index of the car in the simulator's roster
+     */
+    void onMove(int carIndex, Car car);
+
+    /**
+     * Every car has moved (or the race was won) in the given turn.
+     * @param turn number of turns played so far (1 for the first turn)
+     */
+    void onTurnEnd(int turn);
+}
@@ -0,0 +1,122 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * RaceRecorder
+ * ------------
+ * Writes a race to an append-only binary log while it runs.
+ * Attach it to a RaceSimulator with addObserver() before the first turn
+ * and close() it when the race is over.
+ *
+ * Layout (big-endian):
+ *  - header: int magic "RRC1", long track hash, int rows, int cols,
+ *    int car count, then per car: char id, short length + UTF-8 type
+ *    name, int row, int col, int rowVelocity, int colVelocity, int maxSpeed
+ *  - MOVE event:     byte 1, int car index, byte flags (bit 0: has
+ *    destination), int dest row, int dest col, byte outcome ordinal,
+ *    int landing row, int landing col
+ *  - TURN_END event: byte 2, int turn
+ *
+ * Events go into a heap buffer that is written to the channel only when
+ * it fills up, so recording costs a few bytes of copying per move.
+ */
+public class RaceRecorder implements RaceObserver, AutoCloseable {
+
+    static final int MAGIC = 0x52524331; // "RRC1"
+    static final byte MOVE = 1;
+    static final byte TURN_END = 2;
+    static final int HAS_DESTINATION = 1;
+
+    /** Largest single event, in bytes. */
+    private static final int MAX_EVENT = 1 + 4 + 1 + 4 + 4 + 1 + 4 + 4;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+    /**
+     * Create the log and write its header. The cars must be at their
+     * start positions.
+     */
+    public RaceRecorder(String fileName, Racetrack track, Car[] cars) throws IOException {
+        channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+
+        ensure(4 + 8 + 4 + 4 + 4);
+        buffer.putInt(MAGIC)
+                .putLong(track.contentHash())
+                .putInt(track.height())
+                .putInt(track.width())
+                .putInt(cars.length);
+
+        for (Car car : cars) {
+            byte[] type = car.getClass().getSimpleName().getBytes(StandardCharsets.UTF_8);
+            ensure(2 + 2 + type.length + 5 * 4);
+            buffer.putChar(car.getIdNumber())
+                    .putShort((short) type.length)
+                    .put(type)
+                    .putInt(car.getRow())
+                    .putInt(car.getCol())
+                    .putInt(car.getRowVelocity())
+                    .putInt(car.getColVelocity())
+                    .putInt(car.getMaxSpeed());
+        }
+    }
+
+    @Override
+    public void onMove(int carIndex, Car car) {
+        boolean hasDest = car.hasLastDestination();
+        try {
+            ensure(MAX_EVENT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.put(MOVE)
+                .putInt(carIndex)
+                .put((byte) (hasDest ? HAS_DESTINATION : 0))
+                .putInt(hasDest ? car.getLastDestinationRow() : 0)
+                .putInt(hasDest ? car.getLastDestinationCol() : 0)
+                .put((byte) car.getLastOutcome().ordinal())
+                .putInt(car.getRow())
+                .putInt(car.getCol());
+    }
+
+    @Override
+    public void onTurnEnd(int turn) {
+        try {
+            ensure(MAX_EVENT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.put(TURN_END).putInt(turn);
+    }
+
+    /** Write everything buffered so far to the file. */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+}
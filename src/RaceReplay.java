@@ -0,0 +1,240 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * RaceReplay
+ * ----------
+ * Rebuilds any turn of a race recorded by RaceRecorder.
+ *  - Cars are recreated from the log header
+ *  - Each recorded destination is fed straight into Car.applyMove, so
+ *    nobody's chooseDestination runs and no user input is read
+ *  - Every replayed move is checked against the recorded outcome and
+ *    landing cell; any difference throws IllegalStateException
+ *  - A replay car asked to choose a destination gives its next recorded
+ *    one, so stray move() calls stay on the recording
+ *
+ * The whole log is decoded into primitive arrays up front, so rebuilding
+ * a frame is just re-applying moves.
+ */
+public class RaceReplay {
+
+    private final Racetrack track;
+
+    // roster
+    private final char[] ids;
+    private final String[] types;
+    private final int[] startRows;
+    private final int[] startCols;
+    private final int[] rowVelocities;
+    private final int[] colVelocities;
+    private final int[] maxSpeeds;
+
+    // move events
+    private int moveCount;
+    private int[] carIndex = new int[64];
+    private int[] flags = new int[64];
+    private int[] destRows = new int[64];
+    private int[] destCols = new int[64];
+    private int[] outcomes = new int[64];
+    private int[] landRows = new int[64];
+    private int[] landCols = new int[64];
+
+    /** Number of moves recorded by the end of each turn (index 0 = start). */
+    private int[] movesAtTurnEnd = new int[16];
+    private int turnCount;
+
+    /**
+     * Read a recording made on the given track.
+     * @throws IllegalArgumentException if the file is not a recording of this
+     *         track, or is cut short or corrupt
+     */
+    public RaceReplay(String fileName, Racetrack track) throws IOException {
+        this.track = track;
+
+        ByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            int cars = readHeader(buf, fileName);
+            ids = new char[cars];
+            types = new String[cars];
+            startRows = new int[cars];
+            startCols = new int[cars];
+            rowVelocities = new int[cars];
+            colVelocities = new int[cars];
+            maxSpeeds = new int[cars];
+            readEvents(buf);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Corrupt race recording: " + fileName
+                    + " ends in the middle of an event.");
+        }
+    }
+
+    /** Check the magic and track, and return the number of cars. */
+    private int readHeader(ByteBuffer buf, String fileName) {
+        if (buf.remaining() < 24 || buf.getInt() != RaceRecorder.MAGIC) {
+            throw new IllegalArgumentException("Not a race recording: " + fileName);
+        }
+        if (buf.getLong() != track.contentHash() ||
+                buf.getInt() != track.height() || buf.getInt() != track.width()) {
+            throw new IllegalArgumentException("Recording was made on a different track.");
+        }
+
+        int cars = buf.getInt();
+        if (cars < 0 || cars > buf.remaining()) {
+            throw new IllegalArgumentException("Corrupt race recording: bad car count " + cars);
+        }
+        return cars;
+    }
+
+    /** Roster, then move and turn-end events up to the end of the log. */
+    private void readEvents(ByteBuffer buf) {
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = buf.getChar();
+            byte[] type = new byte[buf.getShort() & 0xFFFF];
+            buf.get(type);
+            types[i] = new String(type, StandardCharsets.UTF_8);
+            startRows[i] = buf.getInt();
+            startCols[i] = buf.getInt();
+            rowVelocities[i] = buf.getInt();
+            colVelocities[i] = buf.getInt();
+            maxSpeeds[i] = buf.getInt();
+        }
+
+        while (buf.hasRemaining()) {
+            byte tag = buf.get();
+            if (tag == RaceRecorder.MOVE) {
+                readMove(buf);
+            } else if (tag == RaceRecorder.TURN_END) {
+                buf.getInt();
+                endTurn();
+            } else {
+                throw new IllegalArgumentException("Corrupt race recording: unknown event " + tag);
+            }
+        }
+    }
+
+    private void readMove(ByteBuffer buf) {
+        if (moveCount == carIndex.length) {
+            int n = moveCount * 2;
+            carIndex = Arrays.copyOf(carIndex, n);
+            flags = Arrays.copyOf(flags, n);
+            destRows = Arrays.copyOf(destRows, n);
+            destCols = Arrays.copyOf(destCols, n);
+            outcomes = Arrays.copyOf(outcomes, n);
+            landRows = Arrays.copyOf(landRows, n);
+            landCols = Arrays.copyOf(landCols, n);
+        }
+        int i = moveCount;
+        carIndex[i] = buf.getInt();
+        flags[i] = buf.get();
+        destRows[i] = buf.getInt();
+        destCols[i] = buf.getInt();
+        outcomes[i] = buf.get();
+        landRows[i] = buf.getInt();
+        landCols[i] = buf.getInt();
+
+        if (carIndex[i] < 0 || carIndex[i] >= ids.length
+                || outcomes[i] < 0 || outcomes[i] >= MoveOutcome.values().length) {
+            throw new IllegalArgumentException("Corrupt race recording: bad move event " + i);
+        }
+        moveCount++;
+    }
+
+    private void endTurn() {
+        turnCount++;
+        if (turnCount == movesAtTurnEnd.length) {
+            movesAtTurnEnd = Arrays.copyOf(movesAtTurnEnd, turnCount * 2);
+        }
+        movesAtTurnEnd[turnCount] = moveCount;
+    }
+
+    /** @return number of complete turns in the recording */
+    public int getTurnCount() { return turnCount; }
+
+    public int getCarCount() { return ids.length; }
+
+    /** @return class name the car had in the recorded race */
+    public String getCarType(int carIndex) { return types[carIndex]; }
+
+    /**
+     * Cars as they stood after the given number of turns (0 = start).
+     * The returned cars are fresh replay cars that can be rendered.
+     */
+    public Car[] replayTo(int turn) {
+        if (turn < 0 || turn > turnCount) {
+            throw new IllegalArgumentException("Turn " + turn + " is not in the recording.");
+        }
+
+        ReplayCar[] cars = new ReplayCar[ids.length];
+        for (int i = 0; i < cars.length; i++) {
+            cars[i] = new ReplayCar(i, ids[i], startRows[i], startCols[i],
+                    rowVelocities[i], colVelocities[i], maxSpeeds[i], track);
+        }
+        new OccupancyGrid(track, cars);
+
+        MoveOutcome[] outcomeValues = MoveOutcome.values();
+        int end = movesAtTurnEnd[turn];
+        for (int e = 0; e < end; e++) {
+            ReplayCar car = cars[carIndex[e]];
+            car.applyMove(track, cars, destinationOf(e));
+            car.nextMove = e + 1;
+
+            if (car.getLastOutcome() != outcomeValues[outcomes[e]] ||
+                    car.getRow() != landRows[e] || car.getCol() != landCols[e]) {
+                throw new IllegalStateException("Replay diverged from the recording at move " + e + ".");
+            }
+        }
+        return cars;
+    }
+
+    /** Cars as they stood at the end of the recording. */
+    public Car[] replayAll() {
+        return replayTo(turnCount);
+    }
+
+    /** Recorded destination of move event e, or null if it had none. */
+    private Position destinationOf(int e) {
+        return (flags[e] & RaceRecorder.HAS_DESTINATION) != 0
+                ? new Position(destRows[e], destCols[e])
+                : null;
+    }
+
+    /**
+     * Car rebuilt from a recording; its moves come from the log.
+     */
+    private final class ReplayCar extends Car {
+
+        private final int index;
+
+        /** First move event not yet replayed for this car. */
+        private int nextMove;
+
+        ReplayCar(int index, char id, int row, int col, int rowVel, int colVel, int maxSpeed,
+                  Racetrack track) {
+            super(id, row, col, rowVel, colVel, maxSpeed, track);
+            this.index = index;
+        }
+
+        /**
+         * This car's next recorded destination, or null (stay) once the
+         * recording has no more moves for it.
+         */
+        @Override
+        public Position chooseDestination(Racetrack track, Car[] cars) {
+            while (nextMove < moveCount && carIndex[nextMove] != index) {
+                nextMove++;
+            }
+            if (nextMove == moveCount) return null;
+            return destinationOf(nextMove++);
+        }
+    }
+}
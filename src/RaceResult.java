@@ -0,0 +1,56 @@
+/**
+ * RaceResult
+ * ----------
+ * Summary of a finished (or turn-limited) race returned by RaceSimulator.
+ *  - winner, or null if the turn limit was hit first
+ *  - number of turns played
+ *  - collisions per car and in total
+ *  - length of each car's path history (cells visited, no repeats)
+ *
+ * Per-car arrays are in the roster order the simulator was given.
+ */
+public class RaceResult {
+
+    private final Car winner;
+    private final int turns;
+    private final int[] collisions;
+    private final int[] pathLengths;
+
+    public RaceResult(Car winner, int turns, int[] collisions, int[] pathLengths) {
+        this.winner = winner;
+        this.turns = turns;
+        this.collisions = collisions.clone();
+        this.pathLengths = pathLengths.clone();
+    }
+
+    /** @return the winning car, or null if nobody finished */
+    public Car getWinner() { return winner; }
+
+    public boolean hasWinner() { return winner != null; }
+
+    public int getTurns() { return turns; }
+
+    /** @return collisions of the car at the given roster index */
+    public int getCollisions(int carIndex) { return collisions[carIndex]; }
+
+    /** @return collisions of all cars together */
+    public int getTotalCollisions() {
+        int total = 0;
+        for (int n : collisions) {
+            total += n;
+        }
+        return total;
+    }
+
+    /** @return path history length of the car at the given roster index */
+    public int getPathLength(int carIndex) { return pathLengths[carIndex]; }
+
+    public int getCarCount() { return pathLengths.length; }
+
+    @Override
+    public String toString() {
+        String who = (winner == null) ? "none" : "Car " + winner.getIdNumber();
+        return "RaceResult[winner=" + who + ", turns=" + turns +
+                ", collisions=" + getTotalCollisions() + "]";
+    }
+}
@@ -0,0 +1,311 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * RaceSimulator
+ * -------------
+ * Headless race engine:
+ *  - Takes a track, a car roster and a turn limit
+ *  - Plays turns with the same move rules as RaceGame, in the order a
+ *    TurnScheduler picks (RaceGame's order by default)
+ *  - Does no console I/O of its own; what each move did goes to the
+ *    registered RaceListeners (a ConsoleRaceListener prints it)
+ *  - Reports a RaceResult when the race is over
+ *  - Optionally decides simultaneously: every car picks its destination
+ *    from the board as it was at the start of the turn, in parallel,
+ *    and only then are the moves applied in the scheduler's order
+ *
+ * All race state lives in the simulator and its cars, so many simulators
+ * can run at once on different threads as long as each has its own cars.
+ * The Racetrack is only read and can be shared between them.
+ */
+public class RaceSimulator {
+
+    /** Most path entries reserved per car up front (16 KB). */
+    private static final int MAX_RESERVED_PATH = 1 << 12;
+
+    private final Racetrack track;
+
+    /** Cars in the order they were given; passed to every move. */
+    private final Car[] cars;
+
+    /** Roster indices in move order, rearranged by the scheduler every turn. */
+    private final int[] order;
+
+    private final int maxTurns;
+
+    private final int[] collisions;
+
+    /** Shared with every car; null when nobody listens. */
+    private RaceListener[] listeners;
+
+    private TurnScheduler scheduler;
+
+    /** Collects timings and counters, or null (the default) for none. */
+    private RaceMetrics metrics;
+
+    /** Runs the decision phase in parallel, or null to move car by car. */
+    private ForkJoinPool decisionPool;
+
+    /** Destinations chosen in the decision phase, by roster index. */
+    private long[] decisions;
+
+    /** Notified after every move and every turn. */
+    private final List<RaceObserver> observers = new ArrayList<>();
+
+    private int turns;
+    private Car winner;
+
+    /**
+     * @param track    track to race on
+     * @param cars     roster; cars must already be placed on the track
+     * @param maxTurns turn limit after which the race ends without a winner
+     */
+    public RaceSimulator(Racetrack track, Car[] cars, int maxTurns) {
+        this.track = track;
+        this.cars = cars;
+        this.maxTurns = maxTurns;
+        this.collisions = new int[cars.length];
+        this.scheduler = new MoveOrderScheduler(cars.length);
+
+        // move order is scoped to this race: roster position decides it,
+        // so races running side by side never share a counter
+        this.order = new int[cars.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            cars[i].setMoveOrder(i + 1);
+        }
+
+        // index car positions so collision checks don't scan every car
+        new OccupancyGrid(track, cars);
+
+        // a move visits at most maxSpeed new cells, so turns up to the
+        // reserve never grow (and allocate) a car's path history
+        for (Car c : cars) {
+            c.reservePath((int) Math.min((long) maxTurns * c.getMaxSpeed() + 1, MAX_RESERVED_PATH));
+        }
+    }
+
+    /**
+     * Receive typed events for every move (RaceGame adds a
+     * ConsoleRaceListener). Headless runs add none and build no text.
+     */
+    public void addListener(RaceListener listener) {
+        RaceListener[] next = (listeners == null)
+                ? new RaceListener[1]
+                : Arrays.copyOf(listeners, listeners.length + 1);
+        next[next.length - 1] = listener;
+        setListeners(next);
+    }
+
+    public void removeListener(RaceListener listener) {
+        if (listeners == null) return;
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                RaceListener[] next = new RaceListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, next, 0, i);
+                System.arraycopy(listeners, i + 1, next, i, next.length - i);
+                setListeners(next.length == 0 ? null : next);
+                return;
+            }
+        }
+    }
+
+    private void setListeners(RaceListener[] listeners) {
+        this.listeners = listeners;
+        for (Car c : cars) {
+            c.setListeners(listeners);
+        }
+    }
+
+    /**
+     * Change how the move order is picked each turn
+     * (MoveOrderScheduler by default). Schedulers may keep state between
+     * turns, so give each race that runs at the same time its own instance.
+     */
+    public void setScheduler(TurnScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Collect RaceMetrics for this race (null to stop). One RaceMetrics
+     * may be shared by several races.
+     */
+    public void setMetrics(RaceMetrics metrics) {
+        this.metrics = metrics;
+        for (Car c : cars) {
+            c.setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Switch to simultaneous decisions, running every car's
+     * chooseDestination on the given pool (null for the default
+     * move-by-move race).
+     *
+     * No car moves until all have decided, so the board itself is the
+     * frozen snapshot they all read; nothing is copied. The moves are then
+     * applied one by one in the scheduler's order with the usual collision
+     * rules. Interactive cars still decide one at a time on the calling
+     * thread while the others run.
+     *
+     * Races differ from move-by-move ones: a car no longer sees where the
+     * cars ahead of it in the order moved this turn.
+     */
+    public void setDecisionPool(ForkJoinPool pool) {
+        this.decisionPool = pool;
+        if (pool != null && decisions == null) {
+            decisions = new long[cars.length];
+        }
+    }
+
+    public void addObserver(RaceObserver observer) {
+        observers.add(observer);
+    }
+
+    public void removeObserver(RaceObserver observer) {
+        observers.remove(observer);
+    }
+
+    public Racetrack getTrack() { return track; }
+    public Car[] getCars() { return cars; }
+    public int getTurns() { return turns; }
+    public Car getWinner() { return winner; }
+
+    /** @return true once a car has won or the turn limit is reached */
+    public boolean isOver() {
+        return winner != null || turns >= maxTurns;
+    }
+
+    /**
+     * Play a single turn: every car moves once, in order, until one wins.
+     * @return true if the race is over after this turn
+     */
+    public boolean playTurn() {
+        if (isOver()) {
+            return true;
+        }
+
+        RaceMetrics m = metrics;
+        boolean event = RaceFlightEvents.isTurnEnabled();
+        long startNanos = 0;
+        long startBytes = 0;
+        if (m != null || event) {
+            startNanos = System.nanoTime();
+            startBytes = RaceMetrics.allocatedBytes();
+        }
+
+        scheduler.schedule(cars, track, order);
+
+        ForkJoinPool pool = decisionPool;
+        if (pool != null) {
+            decideAll(pool);
+        }
+
+        // each car moves in order
+        for (int i : order) {
+            Car c = cars[i];
+            MoveOutcome outcome = (pool == null)
+                    ? c.move(track, cars)
+                    : c.applyMove(track, cars, decisions[i]);
+
+            if (outcome.isCollision()) {
+                collisions[i]++;
+            }
+
+            for (int k = 0; k < observers.size(); k++) {
+                observers.get(k).onMove(i, c);
+            }
+
+            if (c.isWinner()) {
+                winner = c;
+                break;
+            }
+        }
+
+        turns++;
+        if (m != null || event) {
+            long bytes = (startBytes < 0) ? -1 : RaceMetrics.allocatedBytes() - startBytes;
+            long nanos = System.nanoTime() - startNanos;
+            if (m != null) m.recordTurn(nanos, bytes);
+            if (event) RaceFlightEvents.turn(turns, cars.length, nanos, bytes);
+        }
+        for (int k = 0; k < observers.size(); k++) {
+            observers.get(k).onTurnEnd(turns);
+        }
+        return isOver();
+    }
+
+    /**
+     * Decision phase of a simultaneous turn: fills decisions[] for every
+     * car that has not won yet.
+     */
+    private void decideAll(ForkJoinPool pool) {
+        DecisionTask task = new DecisionTask(0, cars.length,
+                Math.max(1, cars.length / (pool.getParallelism() * 4)));
+        pool.execute(task);
+
+        for (int i : order) {
+            Car c = cars[i];
+            if (c.isInteractive() && !c.isWinner()) {
+                decisions[i] = c.decide(track, cars);
+            }
+        }
+
+        task.join();
+    }
+
+    /** Decides the non-interactive cars of a roster range, split in halves. */
+    private final class DecisionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        DecisionTask(int from, int to, int grain) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > grain) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new DecisionTask(from, mid, grain), new DecisionTask(mid, to, grain));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                Car c = cars[i];
+                if (!c.isInteractive() && !c.isWinner()) {
+                    decisions[i] = c.decide(track, cars);
+                }
+            }
+        }
+    }
+
+    /**
+     * Play turns until the race is over.
+     */
+    public RaceResult run() {
+        while (!playTurn()) {
+            // keep racing
+        }
+        return getResult();
+    }
+
+    /**
+     * Snapshot of the race so far.
+     */
+    public RaceResult getResult() {
+        int[] pathLengths = new int[cars.length];
+        for (int i = 0; i < cars.length; i++) {
+            pathLengths[i] = cars[i].getPathLength();
+        }
+        return new RaceResult(winner, turns, collisions, pathLengths);
+    }
+}
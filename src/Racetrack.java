@@ -1,33 +1,99 @@
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 /**
  * Racetrack
  * ---------
  * Responsible for:
  *  - Loading the track from a text file (Format B: no dimension header)
- *  - Computing weights using all 8 neighbors
+ *  - Storing cells and weights in flat row-major TrackStorage (arrays,
+ *    or off-heap tiles for tracks larger than the heap)
+ *  - Terrain costs: entering a cell costs 1, except on terrain declared
+ *    dearer ('G' gravel 2, 'M' mud 3, or a "#cost" line in the file)
+ *  - Computing weights (cheapest cost to the finish) using all 8 neighbors
  *  - Providing helpers for walls, finish, bounds
  *  - Hiding 'T' when displaying
  *  - Generating Bresenham paths
  *  - Rendering the winner’s path at the end.
+ *
+ * A track is read-only unless setCell() is called, so one instance can
+ * be shared by any number of races running on different threads. Only
+ * tracks owned by a single race may be edited with setCell().
  */
 public class Racetrack {
 
-    private static final int WALL_WEIGHT = 9999;
+    /** Weight of walls and of track cells that cannot reach a finish cell. */
+    public static final int WALL_WEIGHT = 9999;
+
+    /** Default memory budget of each line-of-sight index. */
+    private static final long DEFAULT_LINE_OF_SIGHT_BYTES = 64L << 20;
+
+    /** Default memory budget for building one turn-weight field. */
+    private static final long DEFAULT_TURN_WEIGHT_BYTES = 256L << 20;
+
+    /** Most start cells startOrder() keeps; more than any race places. */
+    static final int MAX_START_CELLS = 1 << 20;
 
     private static final char WALL = 'X';
     private static final char TRACK = 'T';
     private static final char FINISH = 'F';
 
-    /** Raw track characters loaded from file or default. */
-    private char[][] track;
+    /**
+     * Highest cost a terrain type may declare. A cell dearer than a car's
+     * max speed still takes it a whole move to enter, never forever.
+     */
+    public static final int MAX_TERRAIN_COST = 9;
+
+    /** Number of rows in the grid. */
+    private int rows;
 
-    /** Weight grid storing distance from the finish line. */
-    private int[][] weights;
+    /** Number of columns in the grid. */
+    private int cols;
+
+    /**
+     * Track characters (one byte per cell) and the weight grid storing
+     * distance from the finish line, both row-major: cell (r,c) lives at
+     * index r * cols + c (see index()). On the heap unless the track was
+     * opened with TrackCache.openTiled().
+     */
+    private TrackStorage storage;
+
+    /**
+     * Cost of entering a cell, indexed by its track character. 1 unless
+     * the character is declared as dearer terrain; walls are never
+     * entered and keep 1.
+     */
+    private byte[] terrainCost = defaultTerrainCosts();
+
+    /** Highest terrain cost on the track; 0 until first computed. */
+    private volatile int maxTerrainCost;
+
+    /** FNV-1a 64 hash of dimensions, cells and costs; 0 until first computed. */
+    private volatile long contentHash;
+
+    /** Static line checks per velocity profile, built on first use. */
+    private final ConcurrentHashMap<MoveSet, LineOfSightIndex> lineOfSight = new ConcurrentHashMap<>();
+
+    /** Turns-to-finish fields per velocity profile, built on first use. */
+    private final ConcurrentHashMap<MoveSet, TurnWeightField> turnWeights = new ConcurrentHashMap<>();
+
+    /** Start cells in placement order (see StartGrid), built on first use. */
+    private volatile int[] startOrder;
+
+    /** Memory budget of each line-of-sight index; 0 turns them off. */
+    private volatile long lineOfSightBudget = DEFAULT_LINE_OF_SIGHT_BYTES;
+
+    /** Memory budget for building a turn-weight field; 0 turns them off. */
+    private volatile long turnWeightBudget = DEFAULT_TURN_WEIGHT_BYTES;
 
     /**
      * Construct a racetrack from a file. If anything goes wrong,
@@ -40,52 +106,194 @@ public class Racetrack {
             System.out.println("Could not load track file. Using default track.");
             useDefaultTrack();
         }
-        computeWeights();
+    }
+
+    /**
+     * Construct a racetrack from an in-memory grid of track characters
+     * (used for generated tracks). All rows must have the same length.
+     */
+    public Racetrack(char[][] grid) {
+        if (grid.length == 0 || grid[0].length == 0) {
+            throw new IllegalArgumentException("Track grid is empty.");
+        }
+        setCells(grid);
+    }
+
+    /**
+     * Construct a racetrack from already computed cells and weights
+     * (used by TrackCache when loading a compiled track).
+     */
+    Racetrack(int rows, int cols, byte[] cells, int[] weights, byte[] terrainCost,
+              long contentHash, int maxTerrainCost, int[] startOrder) {
+        this(rows, cols, new HeapTrackStorage(cells, weights), terrainCost,
+                contentHash, maxTerrainCost, startOrder);
+    }
+
+    /**
+     * Construct a racetrack over storage that already holds cells and
+     * weights (used by TrackCache for tiled tracks). The content hash and
+     * highest terrain cost may be passed as 0, and the start order as
+     * null, to compute them on first use.
+     */
+    Racetrack(int rows, int cols, TrackStorage storage, byte[] terrainCost) {
+        this.rows = rows;
+        this.cols = cols;
+        this.storage = storage;
+        this.terrainCost = terrainCost.clone();
+    }
+
+    Racetrack(int rows, int cols, TrackStorage storage, byte[] terrainCost,
+              long contentHash, int maxTerrainCost, int[] startOrder) {
+        this(rows, cols, storage, terrainCost);
+        this.contentHash = contentHash;
+        this.maxTerrainCost = maxTerrainCost;
+        this.startOrder = startOrder;
+    }
+
+    private Racetrack() {
+    }
+
+    /**
+     * Load a track file without the default-track fallback.
+     * @throws IOException or RuntimeException if the file can't be used
+     */
+    static Racetrack fromFile(String fileName) throws IOException {
+        Racetrack track = new Racetrack();
+        track.loadFromFile(fileName);
+        return track;
     }
 
     /**
      * Load track from text file using Format B:
      * - No "rows cols" header
-     * - Each non-empty line is a row
+     * - Each non-empty line is a row (surrounding whitespace is trimmed)
      * - All rows must have the same length
+     * - Lines starting with '#' are not rows: "#cost G=2 M=3" declares
+     *   terrain costs (1 to MAX_TERRAIN_COST; any character but 'X'),
+     *   anything else after '#' is a comment
+     *
+     * The file is memory-mapped and parsed in one pass straight into the
+     * flat cell array; no per-line Strings are created.
+     */
+    private void loadFromFile(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new RuntimeException("Track file is too large.");
+            }
+            parseRows(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Split the buffer into trimmed, non-empty rows and copy each row
+     * directly into the cell array.
      */
-    private void loadFromFile(String fileName) throws FileNotFoundException {
-        Scanner in = new Scanner(new File(fileName));
-        List<String> lines = new ArrayList<>();
+    private void parseRows(ByteBuffer buf) {
+        int size = buf.limit();
+        byte[] grid = null;
+        int rows = 0;
+        int cols = 0;
+
+        int pos = 0;
+        while (pos < size) {
+            // find the end of this line
+            int lineEnd = pos;
+            while (lineEnd < size && buf.get(lineEnd) != '\n' && buf.get(lineEnd) != '\r') {
+                lineEnd++;
+            }
+
+            // trim like String.trim()
+            int from = pos;
+            int to = lineEnd;
+            while (from < to && (buf.get(from) & 0xFF) <= ' ') from++;
+            while (to > from && (buf.get(to - 1) & 0xFF) <= ' ') to--;
+
+            int length = to - from;
+            if (length > 0 && buf.get(from) == '#') {
+                parseDirective(buf, from, to);
+            } else if (length > 0) {
+                if (grid == null) {
+                    // size the grid from the first row; exact when every
+                    // line has the same length and line ending
+                    cols = length;
+                    int lineBytes = Math.max(1, nextLineStart(buf, lineEnd) - pos);
+                    grid = new byte[(int) Math.min((long) cols * (size / lineBytes + 1), size)];
+                } else if (length != cols) {
+                    throw new RuntimeException("All rows in track file must have the same length.");
+                }
 
-        while (in.hasNextLine()) {
-            String line = in.nextLine().trim();
-            if (!line.isEmpty()) {
-                lines.add(line);
+                int offset = rows * cols;
+                if (offset + cols > grid.length) {
+                    grid = Arrays.copyOf(grid, (int) Math.min((long) grid.length * 2, size));
+                }
+                buf.get(from, grid, offset, cols);
+                rows++;
             }
+
+            pos = nextLineStart(buf, lineEnd);
         }
-        in.close();
 
-        if (lines.isEmpty()) {
+        if (rows == 0) {
             throw new RuntimeException("Track file is empty.");
         }
 
-        int rows = lines.size();
-        int cols = lines.get(0).length();
+        if (grid.length != rows * cols) {
+            grid = Arrays.copyOf(grid, rows * cols);
+        }
+        setCells(rows, cols, grid);
+    }
 
-        track = new char[rows][cols];
+    /**
+     * Apply a "#cost C=n ..." line to the cost table; other '#' lines are
+     * comments.
+     */
+    private void parseDirective(ByteBuffer buf, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buf.get(from, bytes);
+        parseDirective(new String(bytes, StandardCharsets.US_ASCII), terrainCost);
+    }
 
-        for (int r = 0; r < rows; r++) {
-            String line = lines.get(r);
-            if (line.length() != cols) {
-                throw new RuntimeException("All rows in track file must have the same length.");
+    /** Apply one trimmed '#' line to a cost table (shared with TrackCache.compile). */
+    static void parseDirective(String line, byte[] terrainCost) {
+        String[] parts = line.substring(1).trim().split("\\s+");
+        if (!parts[0].equals("cost")) return;
+
+        for (int i = 1; i < parts.length; i++) {
+            String part = parts[i];
+            if (part.length() < 3 || part.charAt(1) != '='
+                    || part.charAt(0) == WALL || part.charAt(0) > '~') {
+                throw new RuntimeException("Bad terrain cost '" + part + "' in: " + line);
             }
-            for (int c = 0; c < cols; c++) {
-                track[r][c] = line.charAt(c);
+            int cost;
+            try {
+                cost = Integer.parseInt(part.substring(2));
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Bad terrain cost '" + part + "' in: " + line);
+            }
+            if (cost < 1 || cost > MAX_TERRAIN_COST) {
+                throw new RuntimeException("Terrain cost must be 1 to " + MAX_TERRAIN_COST + ": " + line);
             }
+            terrainCost[part.charAt(0)] = (byte) cost;
         }
     }
 
+    /** Skip one line terminator (\n, \r or \r\n) starting at lineEnd. */
+    private static int nextLineStart(ByteBuffer buf, int lineEnd) {
+        int size = buf.limit();
+        if (lineEnd < size && buf.get(lineEnd) == '\r') {
+            lineEnd++;
+            if (lineEnd < size && buf.get(lineEnd) == '\n') lineEnd++;
+            return lineEnd;
+        }
+        return Math.min(size, lineEnd + 1);
+    }
+
     /**
      * Default track used if the file cannot be loaded.
      */
     private void useDefaultTrack() {
-        track = new char[][] {
+        char[][] track = new char[][] {
                 {'X','X','X','X','X','X','X','X','X','X'},
                 {'X','T','T','T','T','T','T','T','F','X'},
                 {'X','T','X','X','X','T','X','T','T','X'},
@@ -97,124 +305,582 @@ public class Racetrack {
                 {'X','T','T','T','T','T','T','T','T','X'},
                 {'X','X','X','X','X','X','X','X','X','X'}
         };
+
+        setCells(track);
+    }
+
+    private void setCells(char[][] track) {
+        int rows = track.length;
+        int cols = track[0].length;
+        byte[] grid = new byte[rows * cols];
+        for (int r = 0; r < rows; r++) {
+            if (track[r].length != cols) {
+                throw new IllegalArgumentException("All rows of a track must have the same length.");
+            }
+            for (int c = 0; c < cols; c++) {
+                grid[r * cols + c] = (byte) track[r][c];
+            }
+        }
+        setCells(rows, cols, grid);
+    }
+
+    private void setCells(int rows, int cols, byte[] grid) {
+        this.rows = rows;
+        this.cols = cols;
+        HeapTrackStorage heap = new HeapTrackStorage(grid, new int[grid.length]);
+        computeWeights(rows, cols, heap, terrainCost);
+        this.storage = heap;
+    }
+
+    /** Gravel costs 2 and mud 3; every other character costs 1. */
+    static byte[] defaultTerrainCosts() {
+        byte[] costs = new byte[256];
+        Arrays.fill(costs, (byte) 1);
+        costs['G'] = 2;
+        costs['M'] = 3;
+        return costs;
     }
 
     /**
      * Compute weight grid:
      *  - Finish cells: 0
-     *  - Track cells: distance to nearest finish
+     *  - Track cells: cheapest total cost of entering the cells on a path
+     *    to the nearest finish (the step count when all costs are 1)
      *  - Walls: large weight (WALL_WEIGHT)
      *
-     * Uses 8-neighbor relaxation until no more changes.
+     * Multi-source Dial search: every finish cell starts at weight 0 and
+     * cells are expanded in weight order from a bucket queue. Costs are
+     * small, so only the next MAX_TERRAIN_COST + 1 weights can be pending
+     * and the buckets are used as a ring. The cost of a step depends only
+     * on the cell entered, so the first time a cell is reached is already
+     * its cheapest: each cell is queued and expanded once, as in a plain
+     * BFS. Cells the search never reaches (walls and track cut off from
+     * every finish) keep WALL_WEIGHT.
+     *
+     * Reads cells from and writes weights to storage, so TrackCache can run
+     * it over a memory-mapped file as well as over heap arrays.
      */
-    private void computeWeights() {
-        int rows = track.length;
-        int cols = track[0].length;
-
-        weights = new int[rows][cols];
+    static void computeWeights(int rows, int cols, TrackStorage storage, byte[] costs) {
+        int size = rows * cols;
+
+        // bucket w % ringSize holds the flat indices of cells queued at
+        // weight w
+        int maxCost = 1;
+        for (byte cost : costs) maxCost = Math.max(maxCost, cost);
+        int ringSize = maxCost + 1;
+        int[][] buckets = new int[ringSize][16];
+        int[] bucketSize = new int[ringSize];
+        int pending = 0;
 
         // Initial values
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                if (track[r][c] == WALL) {
-                    weights[r][c] = WALL_WEIGHT;
-                } else if (track[r][c] == FINISH) {
-                    weights[r][c] = 0;
-                } else {
-                    weights[r][c] = WALL_WEIGHT;
+        for (int i = 0; i < size; i++) {
+            if (storage.cell(i) == FINISH) {
+                storage.setWeight(i, 0);
+                addToBucket(buckets, bucketSize, 0, i);
+                pending++;
+            } else {
+                storage.setWeight(i, WALL_WEIGHT);
+            }
+        }
+
+        for (int w = 0, b = 0; pending > 0 && w < WALL_WEIGHT; w++, b = (b + 1 == ringSize) ? 0 : b + 1) {
+            // cells pushed while draining go to other buckets (cost >= 1)
+            int[] drain = buckets[b];
+            int drainSize = bucketSize[b];
+            bucketSize[b] = 0;
+            pending -= drainSize;
+
+            for (int k = 0; k < drainSize; k++) {
+                int cell = drain[k];
+
+                int r = cell / cols;
+                int c = cell - r * cols;
+
+                // Check 8 neighbors
+                for (int nr = r - 1; nr <= r + 1; nr++) {
+                    if (nr < 0 || nr >= rows) continue;
+                    int rowStart = nr * cols;
+
+                    for (int nc = c - 1; nc <= c + 1; nc++) {
+                        if (nc < 0 || nc >= cols) continue;
+                        int n = rowStart + nc;
+                        byte type = storage.cell(n);
+                        if (type == WALL) continue;
+
+                        int cost = costs[type & 0xFF];
+                        int next = w + cost;
+                        if (next >= storage.weight(n) || next >= WALL_WEIGHT) continue;
+
+                        storage.setWeight(n, next);
+                        int nb = b + cost;
+                        addToBucket(buckets, bucketSize, (nb >= ringSize) ? nb - ringSize : nb, n);
+                        pending++;
+                    }
                 }
             }
         }
+    }
 
-        boolean changed = true;
-        while (changed) {
-            changed = false;
-            for (int r = 0; r < rows; r++) {
-                for (int c = 0; c < cols; c++) {
+    private static void addToBucket(int[][] buckets, int[] bucketSize, int b, int cell) {
+        if (bucketSize[b] == buckets[b].length) {
+            buckets[b] = Arrays.copyOf(buckets[b], bucketSize[b] * 2);
+        }
+        buckets[b][bucketSize[b]++] = cell;
+    }
 
-                    if (track[r][c] == WALL) continue;
+    // -------- dynamic obstacles --------
 
-                    int current = weights[r][c];
-                    int best = current;
+    /**
+     * Change one cell mid-race (debris, a closed lane, a moved finish, a
+     * patch of mud) to 'X', 'T', 'F' or any other terrain character,
+     * repairing only the weights that actually change.
+     *
+     * Not thread-safe: the track must not be shared with races running on
+     * other threads. Cached turn-weight fields are repaired in place and
+     * only the line-of-sight regions near the cell are dropped (rebuilt on
+     * next use), and contentHash() changes, so a recording made before the
+     * change will not replay on this track.
+     * Cars standing on a cell that becomes a wall are not moved.
+     * @throws UnsupportedOperationException on read-only tracks (see
+     *         isMutable())
+     */
+    public void setCell(int r, int c, char type) {
+        if (!isMutable()) {
+            throw new UnsupportedOperationException("Track is read-only; setCell needs a track loaded into memory.");
+        }
+        if (isOutOfBounds(r, c)) {
+            throw new IllegalArgumentException("Cell " + new Position(r, c) + " is outside the track.");
+        }
+        if (type <= ' ' || type > '~') {
+            throw new IllegalArgumentException("Unknown cell type '" + type + "'.");
+        }
 
-                    // Check 8 neighbors
-                    for (int dr = -1; dr <= 1; dr++) {
-                        for (int dc = -1; dc <= 1; dc++) {
-                            if (dr == 0 && dc == 0) continue;
+        int idx = index(r, c);
+        byte old = storage.cell(idx);
+        if (old == type) return;
+        int oldCost = costAt(idx);
+        storage.setCell(idx, (byte) type);
+        int cost = costAt(idx);
+
+        // a new wall, a removed finish or dearer terrain can only make
+        // weights larger; anything else only smaller
+        if (type == WALL || (old != WALL && type != FINISH && (old == FINISH || cost > oldCost))) {
+            raiseWeights(idx);
+        } else {
+            int w = (type == FINISH) ? 0 : bestNeighborWeight(idx);
+            if (w < storage.weight(idx)) {
+                storage.setWeight(idx, w);
+            }
+            // cheaper terrain also lowers cells reached through this one
+            CellHeap heap = new CellHeap();
+            heap.push(storage.weight(idx), idx);
+            spreadWeights(heap);
+        }
 
-                            int nr = r + dr;
-                            int nc = c + dc;
-                            if (nr < 0 || nr >= rows || nc < 0 || nc >= cols) continue;
+        int max = maxTerrainCost;
+        if (max != 0 && cost > max) maxTerrainCost = cost;
+        for (LineOfSightIndex index : lineOfSight.values()) {
+            index.invalidate(r, c);
+        }
+        for (TurnWeightField field : turnWeights.values()) {
+            field.repair(this, idx);
+        }
+        startOrder = null;
+        contentHash = 0;
+    }
 
-                            if (weights[nr][nc] + 1 < best) {
-                                best = weights[nr][nc] + 1;
-                            }
-                        }
+    /**
+     * Weight increase after idx became a wall, stopped being a finish, or
+     * got dearer to enter.
+     *  1. Walk outward from idx in order of old weight and unset every cell
+     *     whose only neighbors on a cheapest route to the finish were unset
+     *     before it; all other cells keep a valid weight.
+     *  2. Give each unset cell the best weight its kept neighbors offer,
+     *     and spread from those seeds, lowest first, over the unset area.
+     */
+    private void raiseWeights(int idx) {
+        // unset cells in the order they were unset, with their old weights
+        int[] unset = new int[16];
+        int[] oldWeights = new int[16];
+        int count = 0;
+
+        unset[count] = idx;
+        oldWeights[count++] = storage.weight(idx);
+        storage.setWeight(idx, WALL_WEIGHT);
+
+        for (int head = 0; head < count; head++) {
+            int cell = unset[head];
+            int r = cell / cols;
+            int c = cell - r * cols;
+            int old = oldWeights[head];
+
+            for (int nr = r - 1; nr <= r + 1; nr++) {
+                if (nr < 0 || nr >= rows) continue;
+                for (int nc = c - 1; nc <= c + 1; nc++) {
+                    if (nc < 0 || nc >= cols) continue;
+                    int n = nr * cols + nc;
+                    byte type = storage.cell(n);
+                    if (type == WALL || type == FINISH) continue;
+
+                    // weight n had if its cheapest route ran through cell
+                    int child = old + costAt(n);
+                    if (storage.weight(n) != child) continue;
+                    if (bestNeighborWeight(n) == child) continue;   // still supported
+
+                    if (count == unset.length) {
+                        unset = Arrays.copyOf(unset, count * 2);
+                        oldWeights = Arrays.copyOf(oldWeights, count * 2);
                     }
+                    unset[count] = n;
+                    oldWeights[count++] = child;
+                    storage.setWeight(n, WALL_WEIGHT);
+                }
+            }
+        }
 
-                    if (best < current) {
-                        weights[r][c] = best;
-                        changed = true;
-                    }
+        // 2. seeds
+        CellHeap heap = new CellHeap();
+        for (int i = 0; i < count; i++) {
+            int cell = unset[i];
+            if (storage.cell(cell) == WALL) continue;
+            int w = bestNeighborWeight(cell);
+            if (w < WALL_WEIGHT) {
+                storage.setWeight(cell, w);
+                heap.push(w, cell);
+            }
+        }
+        spreadWeights(heap);
+    }
+
+    /**
+     * Dijkstra that lowers weights outward from the queued cells, always
+     * expanding the lowest weight next, and stops where nothing improves.
+     * Entries whose cell has since been lowered again are skipped.
+     */
+    private void spreadWeights(CellHeap heap) {
+        while (!heap.isEmpty()) {
+            long entry = heap.pop();
+            int cell = (int) entry;
+            int w = (int) (entry >>> 32);
+            if (storage.weight(cell) != w) continue;
+
+            int r = cell / cols;
+            int c = cell - r * cols;
+            for (int nr = r - 1; nr <= r + 1; nr++) {
+                if (nr < 0 || nr >= rows) continue;
+                for (int nc = c - 1; nc <= c + 1; nc++) {
+                    if (nc < 0 || nc >= cols) continue;
+                    int n = nr * cols + nc;
+                    if (storage.cell(n) == WALL) continue;
+
+                    int next = w + costAt(n);
+                    if (next >= WALL_WEIGHT || next >= storage.weight(n)) continue;
+                    storage.setWeight(n, next);
+                    heap.push(next, n);
                 }
             }
         }
     }
 
+    /**
+     * Lowest weight a track cell gets from its neighbors: the best of
+     * them plus the cell's own cost, or WALL_WEIGHT when none reaches a
+     * finish.
+     */
+    private int bestNeighborWeight(int cell) {
+        int r = cell / cols;
+        int c = cell - r * cols;
+        int best = WALL_WEIGHT;
+        for (int nr = r - 1; nr <= r + 1; nr++) {
+            if (nr < 0 || nr >= rows) continue;
+            for (int nc = c - 1; nc <= c + 1; nc++) {
+                if (nc < 0 || nc >= cols) continue;
+                int n = nr * cols + nc;
+                if (n == cell || storage.cell(n) == WALL) continue;
+                best = Math.min(best, storage.weight(n));
+            }
+        }
+        best += costAt(cell);
+        return (best >= WALL_WEIGHT) ? WALL_WEIGHT : best;
+    }
+
     // -------- helpers --------
 
-    public int height() { return track.length; }
-    public int width() { return track[0].length; }
-    public int getWeight(int r, int c) { return weights[r][c]; }
-    public char getTrack(int r, int c) { return track[r][c]; }
+    public int height() { return rows; }
+    public int width() { return cols; }
+    public int getWeight(int r, int c) { return storage.weight(index(r, c)); }
+    public char getTrack(int r, int c) { return (char) (storage.cell(index(r, c)) & 0xFF); }
+
+    /**
+     * Highest cost of entering any cell of the track. setCell() only ever
+     * raises it, so it is an upper bound once terrain has been removed.
+     */
+    public int maxTerrainCost() {
+        int max = maxTerrainCost;
+        if (max != 0) return max;
+
+        max = 1;
+        int size = rows * cols;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, costAt(i));
+        }
+        maxTerrainCost = max;
+        return max;
+    }
+
+    /** Cost table indexed by track character; callers must not modify it. */
+    byte[] terrainCosts() { return terrainCost; }
+
+    /**
+     * Hash of the track layout (dimensions, cell characters and any
+     * terrain cost that differs from the defaults), used to check that a
+     * recording is replayed on the track it was made on.
+     */
+    public long contentHash() {
+        long h = contentHash;
+        if (h != 0) return h;
+
+        h = 0xcbf29ce484222325L;
+        h = (h ^ rows) * 0x100000001b3L;
+        h = (h ^ cols) * 0x100000001b3L;
+        int size = rows * cols;
+        for (int i = 0; i < size; i++) {
+            h = (h ^ (storage.cell(i) & 0xFF)) * 0x100000001b3L;
+        }
+        byte[] defaults = defaultTerrainCosts();
+        for (int ch = 0; ch < terrainCost.length; ch++) {
+            if (terrainCost[ch] != defaults[ch]) {
+                h = (h ^ ch) * 0x100000001b3L;
+                h = (h ^ terrainCost[ch]) * 0x100000001b3L;
+            }
+        }
+        if (h == 0) h = 1;
+        contentHash = h;
+        return h;
+    }
+
+    /** Raw cell array, row-major; callers must not modify it. */
+    byte[] cellData() { return heapStorage().cells(); }
+
+    /** Raw weight array, row-major; callers must not modify it. */
+    int[] weightData() { return heapStorage().weights(); }
+
+    private HeapTrackStorage heapStorage() {
+        if (!(storage instanceof HeapTrackStorage)) {
+            throw new IllegalStateException("Track is not stored on the heap.");
+        }
+        return (HeapTrackStorage) storage;
+    }
+
+    // -------- index-based helpers --------
+    // Cells are addressed by their row-major index r * width() + c.
+    // Callers must make sure (r,c) is inside the grid before packing it.
+
+    public int index(int r, int c) { return r * cols + c; }
+    public int rowOf(int idx) { return idx / cols; }
+    public int colOf(int idx) { return idx % cols; }
+    public int weightAt(int idx) { return storage.weight(idx); }
+    public char trackAt(int idx) { return (char) (storage.cell(idx) & 0xFF); }
+    public boolean isWallAt(int idx) { return storage.cell(idx) == WALL; }
+    public boolean isFinishAt(int idx) { return storage.cell(idx) == FINISH; }
+    public int costAt(int idx) { return terrainCost[storage.cell(idx) & 0xFF]; }
+
+    public boolean isOutOfBounds(int r, int c) {
+        return r < 0 || r >= rows || c < 0 || c >= cols;
+    }
 
     public boolean isOutOfBounds(Position p) {
-        int r = p.getRow();
-        int c = p.getCol();
-        return r < 0 || r >= height() || c < 0 || c >= width();
+        return isOutOfBounds(p.getRow(), p.getCol());
     }
 
     public boolean isWall(Position p) {
         if (isOutOfBounds(p)) return true;
-        return track[p.getRow()][p.getCol()] == WALL;
+        return storage.cell(index(p.getRow(), p.getCol())) == WALL;
     }
 
     public boolean isFinish(Position p) {
         if (isOutOfBounds(p)) return false;
-        return track[p.getRow()][p.getCol()] == FINISH;
+        return storage.cell(index(p.getRow(), p.getCol())) == FINISH;
+    }
+
+    /**
+     * Turns needed to reach a finish cell from (r,c) for a velocity profile.
+     * @throws IllegalStateException if the field does not fit the
+     *         turn-weight budget (see getTurnWeights)
+     */
+    public int getTurnWeight(MoveSet profile, int r, int c) {
+        TurnWeightField field = getTurnWeights(profile);
+        if (field == null) {
+            throw new IllegalStateException("Track is too large for a turn-weight field.");
+        }
+        return field.get(r, c);
+    }
+
+    /**
+     * True unless the track is read-only: tracks opened with
+     * TrackCache.openTiled() reject setCell().
+     */
+    public boolean isMutable() {
+        return storage.isMutable();
+    }
+
+    /**
+     * Shared turns-to-finish field for a velocity profile, computed the
+     * first time any car asks for it, or null when building it would take
+     * more than the turn-weight budget or the track is tiled (building it
+     * reads every cell, which would load every tile); cars then rank by
+     * getWeight.
+     *
+     * The field is built outside the cache's lock, so threads asking for
+     * other profiles are never held up; two threads asking for the same
+     * new profile at once may both build it, and one copy wins.
+     */
+    public TurnWeightField getTurnWeights(MoveSet profile) {
+        TurnWeightField field = turnWeights.get(profile);
+        if (field != null) return field;
+        if (storage.isTiled() || turnWeightBytes(profile) > turnWeightBudget) return null;
+
+        field = computeTurnWeights(profile);
+        TurnWeightField raced = turnWeights.putIfAbsent(profile, field);
+        return (raced != null) ? raced : field;
+    }
+
+    /**
+     * Memory needed to build a turn-weight field: the landing and
+     * predecessor edge arrays, plus four ints per cell.
+     */
+    private long turnWeightBytes(MoveSet moves) {
+        long size = (long) rows * cols;
+        long edges = size * moves.size();
+        if (edges > Integer.MAX_VALUE - 8) return Long.MAX_VALUE;
+        return edges * 8 + size * 16;
+    }
+
+    /**
+     * Memory budget in bytes for building each turn-weight field from now
+     * on; larger tracks get no field. 0 turns the fields off.
+     */
+    public void setTurnWeightBudget(long bytes) {
+        turnWeightBudget = bytes;
+    }
+
+    /**
+     * BFS over the legal-move graph, backwards from the finish cells.
+     *  1. For every free cell and every move, find where the move lands
+     *     (rows are processed in parallel; each row has its own cursor)
+     *  2. Invert those edges into a compact predecessor list
+     *  3. Spread outward from the finish cells one turn at a time
+     */
+    private TurnWeightField computeTurnWeights(MoveSet moves) {
+        int size = rows * cols;
+        int m = moves.size();
+
+        // 1. landing cell of move k from cell i, or -1 (wall cell / no progress)
+        int[] landing = new int[size * m];
+        IntStream.range(0, rows).parallel().forEach(r -> {
+            PathCursor cursor = new PathCursor();
+            for (int c = 0; c < cols; c++) {
+                int from = r * cols + c;
+                int base = from * m;
+                boolean blocked = storage.cell(from) == WALL || storage.cell(from) == FINISH;
+                for (int k = 0; k < m; k++) {
+                    int to = blocked ? from
+                            : traceMove(cursor, r, c, r + moves.rowOffset(k), c + moves.colOffset(k),
+                                        moves.getMaxSpeed());
+                    landing[base + k] = (to == from) ? -1 : to;
+                }
+            }
+        });
+
+        // 2. predecessors of each cell, as offsets into one flat array
+        int[] start = new int[size + 1];
+        for (int to : landing) {
+            if (to >= 0) start[to + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            start[i + 1] += start[i];
+        }
+        int[] fill = Arrays.copyOf(start, size);
+        int[] preds = new int[start[size]];
+        for (int e = 0; e < landing.length; e++) {
+            int to = landing[e];
+            if (to >= 0) preds[fill[to]++] = e / m;
+        }
+
+        // 3. BFS from every finish cell
+        int[] turns = new int[size];
+        Arrays.fill(turns, WALL_WEIGHT);
+        int[] queue = new int[size];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < size; i++) {
+            if (storage.cell(i) == FINISH) {
+                turns[i] = 0;
+                queue[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int cell = queue[head++];
+            int next = turns[cell] + 1;
+            if (next >= WALL_WEIGHT) continue;
+            for (int p = start[cell]; p < start[cell + 1]; p++) {
+                int from = preds[p];
+                if (turns[from] == WALL_WEIGHT) {
+                    turns[from] = next;
+                    queue[tail++] = from;
+                }
+            }
+        }
+
+        return new TurnWeightField(moves, cols, turns);
+    }
+
+    /**
+     * Shared line-of-sight index for a velocity profile, or null when the
+     * index is turned off. Regions are filled in lazily as cars use them.
+     */
+    public LineOfSightIndex getLineOfSight(MoveSet moves) {
+        long budget = lineOfSightBudget;
+        if (budget <= 0) return null;
+
+        // plain get first: the common case must not allocate a lambda
+        LineOfSightIndex index = lineOfSight.get(moves);
+        if (index != null) return index;
+        return lineOfSight.computeIfAbsent(moves, m -> new LineOfSightIndex(this, m, budget));
+    }
+
+    /**
+     * Memory budget in bytes for each line-of-sight index built after this
+     * call; 0 turns the index off.
+     */
+    public void setLineOfSightBudget(long bytes) {
+        lineOfSightBudget = bytes;
     }
 
     /**
      * Character for display: hide 'T' as space to make track cleaner.
+     * Terrain ('G', 'M', ...) is shown as its own character.
      */
     public char getDisplayChar(int r, int c) {
-        char ch = track[r][c];
+        char ch = (char) (storage.cell(index(r, c)) & 0xFF);
         if (ch == TRACK) return ' ';
         return ch;
     }
 
     /**
      * Display the current track with cars overlaid.
+     * Loops that draw many frames should keep their own TrackRenderer
+     * so its buffers are reused. Tracks too large to print (see
+     * TrackRenderer) throw IllegalArgumentException.
      */
     public void displayTrack(Car[] cars) {
-        System.out.println();
-        for (int r = 0; r < height(); r++) {
-            for (int c = 0; c < width(); c++) {
-                char ch = getDisplayChar(r, c);
-                for (Car car : cars) {
-                    if (car != null && car.getRow() == r && car.getCol() == c) {
-                        ch = car.getIdNumber();
-                    }
-                }
-                System.out.print(ch + " ");
-            }
-            System.out.println();
-        }
-        System.out.println();
+        new TrackRenderer(this, System.out).render(cars);
     }
 
     /**
      * Find highest-weight unused track cell to place cars at start.
+     * Scans the whole grid; StartGrid gives the same cells in the same
+     * order without rescanning, for placing many cars.
      */
     public Position findHighestWeightStart(boolean[][] used) {
         int best = -1;
@@ -222,10 +888,11 @@ public class Racetrack {
 
         for (int r = 0; r < height(); r++) {
             for (int c = 0; c < width(); c++) {
-                if (track[r][c] != TRACK) continue;
+                int idx = index(r, c);
+                if (storage.cell(idx) != TRACK) continue;
                 if (used[r][c]) continue;
 
-                int w = weights[r][c];
+                int w = storage.weight(idx);
                 if (w < WALL_WEIGHT && w > best) {
                     best = w;
                     bestPos = new Position(r, c);
@@ -236,86 +903,112 @@ public class Racetrack {
     }
 
     /**
-     * Bresenham's line: returns all grid points between start and end (inclusive).
+     * Flat indices of the track cells that can reach a finish, highest
+     * weight first and row-major within a weight: the order in which
+     * findHighestWeightStart picks them. Keeps only the first
+     * MAX_START_CELLS, so a huge track never needs an index per cell.
+     * Two counting-sort passes over the weights, cached until the track
+     * changes; callers must not modify it. Tiled tracks are never scanned:
+     * they get their order from the compiled file.
      */
-    public List<Position> getPath(Position start, Position end) {
-        List<Position> path = new ArrayList<>();
+    int[] startOrder() {
+        int[] order = startOrder;
+        if (order != null) return order;
+        if (storage.isTiled()) {
+            throw new IllegalStateException("Tiled track was opened without its start order.");
+        }
 
-        int x0 = start.getRow();
-        int y0 = start.getCol();
-        int x1 = end.getRow();
-        int y1 = end.getCol();
+        int size = rows * cols;
+        int[] count = new int[WALL_WEIGHT + 1];
+        for (int i = 0; i < size; i++) {
+            if (storage.cell(i) == TRACK) {
+                count[storage.weight(i)]++;
+            }
+        }
 
-        int dx = Math.abs(x1 - x0);
-        int dy = Math.abs(y1 - y0);
-        int sx = (x0 < x1) ? 1 : -1;
-        int sy = (y0 < y1) ? 1 : -1;
-        int err = dx - dy;
+        // bucket start offsets, from the highest weight down; weights
+        // below the cutoff don't fit and the cutoff weight only partly
+        int total = 0;
+        int cutoff = -1;
+        for (int w = WALL_WEIGHT - 1; w >= 0; w--) {
+            int n = count[w];
+            count[w] = total;
+            if (cutoff < 0 && total + n >= MAX_START_CELLS) cutoff = w;
+            total += n;
+        }
 
-        int x = x0;
-        int y = y0;
+        order = new int[Math.min(total, MAX_START_CELLS)];
+        for (int i = 0; i < size; i++) {
+            if (storage.cell(i) == TRACK) {
+                int w = storage.weight(i);
+                if (w < WALL_WEIGHT && w >= cutoff && count[w] < order.length) {
+                    order[count[w]++] = i;
+                }
+            }
+        }
 
-        while (true) {
-            path.add(new Position(x, y));
-            if (x == x1 && y == y1) break;
+        startOrder = order;
+        return order;
+    }
 
-            int e2 = err * 2;
-            if (e2 > -dy) {
-                err -= dy;
-                x += sx;
-            }
-            if (e2 < dx) {
-                err += dx;
-                y += sy;
-            }
+    /**
+     * Bresenham's line: returns all grid points between start and end (inclusive).
+     * Hot paths should walk the line with a reusable PathCursor instead,
+     * which visits the same cells without building a list.
+     */
+    public List<Position> getPath(Position start, Position end) {
+        List<Position> path = new ArrayList<>();
+        path.add(start);
+
+        PathCursor cursor = new PathCursor();
+        cursor.reset(start.getRow(), start.getCol(), end.getRow(), end.getCol());
+        while (cursor.next()) {
+            path.add(new Position(cursor.row(), cursor.col()));
         }
 
         return path;
     }
 
     /**
-     * Final display with the winning car's path drawn onto the track.
+     * Where a move from (row,col) towards (destRow,destCol) ends when no
+     * cars are in the way, following Car.move's rules: the car stops on
+     * its last safe cell before a wall or the grid edge, stops before a
+     * cell whose terrain costs more than is left of budget (past the first
+     * cell, which is always entered), and stops on the first finish cell
+     * it crosses.
+     * @param budget terrain cost the car may spend this turn (its max speed)
+     * @return flat index of the landing cell (a finish cell means a win)
      */
-    public void printWithWinningPath(List<Position> path, Car[] cars, Car winner) {
-        System.out.println();
-        System.out.println("Final Track – CAR " + winner.getIdNumber() + " WINS!");
-        System.out.println();
+    public int traceMove(PathCursor cursor, int row, int col, int destRow, int destCol, int budget) {
+        int from = index(row, col);
+        int landing = from;
+        cursor.reset(row, col, destRow, destCol);
 
-        char[][] temp = new char[height()][width()];
+        while (cursor.next()) {
+            int r = cursor.row();
+            int c = cursor.col();
+            if (isOutOfBounds(r, c)) break;
 
-        // base
-        for (int r = 0; r < height(); r++) {
-            for (int c = 0; c < width(); c++) {
-                temp[r][c] = getDisplayChar(r, c);
-            }
-        }
+            int idx = index(r, c);
+            if (storage.cell(idx) == WALL) break;
 
-        // path
-        if (path != null) {
-            for (Position p : path) {
-                if (!isOutOfBounds(p) && !isWall(p)) {
-                    temp[p.getRow()][p.getCol()] = winner.getIdNumber();
-                }
-            }
-        }
+            budget -= costAt(idx);
+            if (budget < 0 && landing != from) break;
 
-        // cars
-        for (Car car : cars) {
-            if (car != null) {
-                Position p = car.getPosition();
-                if (!isOutOfBounds(p)) {
-                    temp[p.getRow()][p.getCol()] = car.getIdNumber();
-                }
-            }
+            landing = idx;
+            if (storage.cell(idx) == FINISH) break;
         }
+        return landing;
+    }
 
-        // print
-        for (int r = 0; r < height(); r++) {
-            for (int c = 0; c < width(); c++) {
-                System.out.print(temp[r][c] + " ");
-            }
-            System.out.println();
-        }
+    /**
+     * Final display with the winning car's path drawn onto the track.
+     */
+    public void printWithWinningPath(List<Position> path, Car[] cars, Car winner) {
         System.out.println();
+        System.out.println("Final Track – CAR " + winner.getIdNumber() + " WINS!");
+        System.out.println();
+
+        new TrackRenderer(this, System.out).renderWinningPath(path, cars, winner);
     }
 }
@@ -0,0 +1,68 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * SpectatorClient
+ * ---------------
+ * Stand-in viewer for SpectatorServer: connects on localhost, keeps its
+ * own copy of the car positions and prints every turn as it arrives.
+ *
+ * Usage: java SpectatorClient [port]
+ */
+public class SpectatorClient {
+
+    private static final MoveOutcome[] OUTCOMES = MoveOutcome.values();
+
+    public static void main(String[] args) throws IOException {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : SpectatorServer.DEFAULT_PORT;
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            char[] ids = null;
+
+            while (true) {
+                try {
+                    in.readInt(); // frame length
+                } catch (EOFException e) {
+                    System.out.println("Race feed closed.");
+                    return;
+                }
+
+                byte type = in.readByte();
+                int turn = in.readInt();
+
+                if (type == SpectatorServer.SNAPSHOT) {
+                    in.readLong(); // track hash
+                    int rows = in.readInt();
+                    int cols = in.readInt();
+                    ids = new char[in.readInt()];
+                    System.out.println("Turn " + turn + ": " + ids.length + " cars on a "
+                            + rows + "x" + cols + " track");
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = in.readChar();
+                        Position p = new Position(in.readInt(), in.readInt());
+                        boolean winner = in.readByte() != 0;
+                        System.out.println("  Car " + ids[i] + " at " + p + (winner ? " (winner)" : ""));
+                    }
+                } else if (type == SpectatorServer.TURN) {
+                    int moves = in.readInt();
+                    System.out.println("Turn " + turn + ":");
+                    for (int m = 0; m < moves; m++) {
+                        int car = in.readInt();
+                        Position p = new Position(in.readInt(), in.readInt());
+                        MoveOutcome outcome = OUTCOMES[in.readByte()];
+                        char id = (ids != null && car < ids.length) ? ids[car] : '?';
+                        System.out.println("  Car " + id + " -> " + p + " " + outcome
+                                + (outcome == MoveOutcome.FINISH ? " - CAR " + id + " WINS!" : ""));
+                    }
+                } else {
+                    throw new IOException("Unknown frame type " + type + ".");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,368 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * SpectatorServer
+ * ---------------
+ * Streams a running race to any number of viewers over TCP on localhost
+ * (see SpectatorClient). Attach it to a RaceSimulator with addObserver()
+ * and close() it when the race is over.
+ *
+ *  - The simulation thread encodes each turn once into a delta frame;
+ *    every viewer is sent the same bytes (a duplicate of one buffer)
+ *  - All socket work happens on one non-blocking selector thread, so a
+ *    viewer can never stall the race
+ *  - A viewer that falls MAX_BACKLOG frames behind has its backlog
+ *    dropped and is resynced with the next snapshot, skipping the turns
+ *    in between
+ *
+ * Frames (big-endian), each prefixed with int length of what follows:
+ *  - SNAPSHOT: byte 1, int turn, long track hash, int rows, int cols,
+ *    int car count, then per car: char id, int row, int col, byte winner
+ *  - TURN:     byte 2, int turn, int move count, then per move:
+ *    int car index, int row, int col, byte outcome ordinal
+ * A new (or resynced) viewer gets a snapshot taken at the end of the
+ * next turn, then the deltas of the turns after it.
+ *
+ * main() runs a slowed-down CPU race to watch:
+ *   java SpectatorServer [port] [track file] [ms per turn]
+ */
+public class SpectatorServer implements RaceObserver, AutoCloseable {
+
+    static final int DEFAULT_PORT = 5555;
+
+    static final byte SNAPSHOT = 1;
+    static final byte TURN = 2;
+
+    /** Bytes per move in a TURN frame. */
+    static final int MOVE_BYTES = 4 + 4 + 4 + 1;
+
+    /** Frames a viewer may have queued before it is resynced. */
+    private static final int MAX_BACKLOG = 256;
+
+    private final Racetrack track;
+    private final Car[] cars;
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread ioThread;
+    private volatile boolean closed;
+
+    /** Moves of the turn in progress; simulation thread only. */
+    private ByteBuffer moves = ByteBuffer.allocate(64 * MOVE_BYTES);
+    private int moveCount;
+
+    /** Set by the selector thread when a viewer needs a snapshot. */
+    private volatile boolean snapshotWanted;
+
+    /** Turns handed from the simulation thread to the selector thread. */
+    private final ConcurrentLinkedQueue<Frames> published = new ConcurrentLinkedQueue<>();
+
+    /** Connected viewers; selector thread only. */
+    private final List<Viewer> viewers = new ArrayList<>();
+
+    /**
+     * Listen on 127.0.0.1 (port 0 picks a free port, see getPort()).
+     */
+    public SpectatorServer(int port, Racetrack track, Car[] cars) throws IOException {
+        this.track = track;
+        this.cars = cars;
+
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        ioThread = new Thread(this::serve, "spectator-server");
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        String fileName = (args.length > 1) ? args[1] : "track1.txt";
+        long turnMillis = (args.length > 2) ? Long.parseLong(args[2]) : 500;
+
+        Racetrack track = TrackCache.load(fileName);
+        StartGrid grid = new StartGrid(track);
+        Car[] cars = new Car[3];
+        for (int i = 0; i < cars.length; i++) {
+            Position p = grid.next();
+            char id = (char) ('1' + i);
+            if (i == 0) {
+                cars[i] = new SportsCar(id, p.getRow(), p.getCol(), 3, 3, 5, track);
+            } else if (i == 1) {
+                cars[i] = new AgileCar(id, p.getRow(), p.getCol(), 3, 3, 5, track);
+            } else {
+                cars[i] = new PlannerCar(id, p.getRow(), p.getCol(), 3, 3, 5, track);
+            }
+        }
+
+        RaceSimulator race = new RaceSimulator(track, cars, 1000);
+        try (SpectatorServer spectators = new SpectatorServer(port, track, cars)) {
+            race.addObserver(spectators);
+            System.out.println("Spectators can connect on port " + spectators.getPort() + ".");
+
+            while (!race.playTurn()) {
+                Thread.sleep(turnMillis);
+            }
+            // let the last frames go out before disconnecting everyone
+            Thread.sleep(turnMillis);
+        }
+
+        Car winner = race.getWinner();
+        System.out.println((winner == null) ? "No winner." : "CAR " + winner.getIdNumber() + " WINS!");
+    }
+
+    /** @return the local port viewers connect to */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    // -------- simulation thread --------
+
+    @Override
+    public void onMove(int carIndex, Car car) {
+        if (moves.remaining() < MOVE_BYTES) {
+            ByteBuffer grown = ByteBuffer.allocate(moves.capacity() * 2);
+            moves.flip();
+            grown.put(moves);
+            moves = grown;
+        }
+        moves.putInt(carIndex)
+                .putInt(car.getRow())
+                .putInt(car.getCol())
+                .put((byte) car.getLastOutcome().ordinal());
+        moveCount++;
+    }
+
+    @Override
+    public void onTurnEnd(int turn) {
+        moves.flip();
+        ByteBuffer delta = ByteBuffer.allocate(4 + 1 + 4 + 4 + moves.remaining());
+        delta.putInt(delta.capacity() - 4)
+                .put(TURN)
+                .putInt(turn)
+                .putInt(moveCount)
+                .put(moves);
+        delta.flip();
+        moves.clear();
+        moveCount = 0;
+
+        ByteBuffer snapshot = null;
+        if (snapshotWanted) {
+            snapshotWanted = false;
+            snapshot = snapshot(turn);
+        }
+
+        if (!closed) {
+            published.add(new Frames(snapshot, delta.asReadOnlyBuffer()));
+            selector.wakeup();
+        }
+    }
+
+    private ByteBuffer snapshot(int turn) {
+        int size = 1 + 4 + 8 + 4 + 4 + 4 + cars.length * (2 + 4 + 4 + 1);
+        ByteBuffer buf = ByteBuffer.allocate(4 + size);
+        buf.putInt(size)
+                .put(SNAPSHOT)
+                .putInt(turn)
+                .putLong(track.contentHash())
+                .putInt(track.height())
+                .putInt(track.width())
+                .putInt(cars.length);
+        for (Car car : cars) {
+            buf.putChar(car.getIdNumber())
+                    .putInt(car.getRow())
+                    .putInt(car.getCol())
+                    .put((byte) (car.isWinner() ? 1 : 0));
+        }
+        buf.flip();
+        return buf.asReadOnlyBuffer();
+    }
+
+    /**
+     * Stop accepting viewers and disconnect everyone. Frames still queued
+     * for slow viewers are dropped.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        selector.wakeup();
+        try {
+            ioThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // -------- selector thread --------
+
+    private void serve() {
+        ByteBuffer scratch = ByteBuffer.allocate(256);
+        try {
+            while (!closed) {
+                selector.select();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+
+                    Viewer viewer = (Viewer) key.attachment();
+                    if (key.isReadable()) {
+                        // viewers never send anything; this only notices hang-ups
+                        scratch.clear();
+                        if (read(viewer, scratch) < 0) {
+                            drop(viewer);
+                            continue;
+                        }
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        flush(viewer);
+                    }
+                }
+
+                Frames frames;
+                while ((frames = published.poll()) != null) {
+                    broadcast(frames);
+                }
+            }
+        } catch (IOException e) {
+            // selector failed: nothing left to serve
+        } finally {
+            // however serving ended, stop the race from queueing frames
+            // that nobody will ever drain
+            closed = true;
+            published.clear();
+            for (Viewer viewer : new ArrayList<>(viewers)) {
+                drop(viewer);
+            }
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        // frames are written whole; don't hold small ones back
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Viewer viewer = new Viewer(channel);
+        viewer.key = channel.register(selector, SelectionKey.OP_READ, viewer);
+        viewers.add(viewer);
+        snapshotWanted = true;
+    }
+
+    private void broadcast(Frames frames) {
+        for (int i = viewers.size() - 1; i >= 0; i--) {
+            Viewer viewer = viewers.get(i);
+            if (viewer.needsSnapshot) {
+                if (frames.snapshot == null) continue;
+                viewer.needsSnapshot = false;
+                viewer.backlog.add(frames.snapshot.duplicate());
+                flush(viewer);
+                continue;
+            }
+            if (viewer.backlog.size() >= MAX_BACKLOG) {
+                // too slow: skip ahead to the next snapshot, but finish
+                // the frame already half sent so the stream stays whole
+                ByteBuffer sending = viewer.backlog.peek();
+                viewer.backlog.clear();
+                if (sending.position() > 0) {
+                    viewer.backlog.add(sending);
+                }
+                viewer.needsSnapshot = true;
+                snapshotWanted = true;
+                continue;
+            }
+            viewer.backlog.add(frames.delta.duplicate());
+            flush(viewer);
+        }
+    }
+
+    private void flush(Viewer viewer) {
+        try {
+            ByteBuffer head;
+            while ((head = viewer.backlog.peek()) != null) {
+                viewer.channel.write(head);
+                if (head.hasRemaining()) break;
+                viewer.backlog.poll();
+            }
+        } catch (IOException e) {
+            drop(viewer);
+            return;
+        }
+
+        int ops = viewer.backlog.isEmpty()
+                ? SelectionKey.OP_READ
+                : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+        if (viewer.key.interestOps() != ops) {
+            viewer.key.interestOps(ops);
+        }
+    }
+
+    private int read(Viewer viewer, ByteBuffer scratch) {
+        try {
+            return viewer.channel.read(scratch);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private void drop(Viewer viewer) {
+        viewers.remove(viewer);
+        viewer.key.cancel();
+        try {
+            viewer.channel.close();
+        } catch (IOException e) {
+            // already gone
+        }
+    }
+
+    /** One turn: its delta frame, plus a snapshot if any viewer asked for one. */
+    private static final class Frames {
+        final ByteBuffer snapshot;
+        final ByteBuffer delta;
+
+        Frames(ByteBuffer snapshot, ByteBuffer delta) {
+            this.snapshot = snapshot;
+            this.delta = delta;
+        }
+    }
+
+    private static final class Viewer {
+        final SocketChannel channel;
+        final ArrayDeque<ByteBuffer> backlog = new ArrayDeque<>();
+        SelectionKey key;
+        boolean needsSnapshot = true;
+
+        Viewer(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
@@ -2,7 +2,10 @@
  * SportsCar
  * ---------
  * CPU car that focuses on speed.
- * Always chooses the lowest-weight reachable destination.
+ * Always chooses the move whose landing cell (where it ends after walls
+ * and rough terrain cut it short) has the fewest turns to finish (ties
+ * go to the lowest weight; on tracks too large for a turn field, just
+ * the lowest weight).
  * Does not avoid collisions, so it crashes often (as required).
  */
 public class SportsCar extends Car {
@@ -20,33 +23,36 @@ public class SportsCar extends Car {
 
     @Override
     public Position chooseDestination(Racetrack track, Car[] cars) {
-        int bestWeight = track.getWeight(getRow(), getCol());
-        Position bestPos = getPosition();
-
-        for (int dr = -getRowVelocity(); dr <= getRowVelocity(); dr++) {
-            for (int dc = -getColVelocity(); dc <= getColVelocity(); dc++) {
-
-                if (dr == 0 && dc == 0) continue;
-                if (Math.abs(dr) + Math.abs(dc) > getMaxSpeed()) continue;
-
-                int nr = getRow() + dr;
-                int nc = getCol() + dc;
-
-                if (nr < 0 || nr >= track.height() ||
-                        nc < 0 || nc >= track.width()) {
-                    continue;
-                }
-
-                if (track.getTrack(nr, nc) == 'X') continue;
+        return toPosition(choosePackedDestination(track, cars));
+    }
 
-                int w = track.getWeight(nr, nc);
-                if (w < bestWeight) {
-                    bestWeight = w;
-                    bestPos = new Position(nr, nc);
-                }
+    @Override
+    protected long choosePackedDestination(Racetrack track, Car[] cars) {
+        int row = getRow();
+        int col = getCol();
+        TurnWeightField turns = track.getTurnWeights(getMoveSet());
+        int bestWeight = rank(track, turns, track.index(row, col));
+        int bestIdx = -1;
+
+        MoveSet moves = getMoveSet();
+        for (int i = 0; i < moves.size(); i++) {
+            int nr = row + moves.rowOffset(i);
+            int nc = col + moves.colOffset(i);
+            if (track.isOutOfBounds(nr, nc)) continue;
+
+            int idx = track.index(nr, nc);
+            if (track.isWallAt(idx)) continue;
+
+            // rank where the move really ends, not where it aims
+            int landing = track.traceMove(getCursor(), row, col, nr, nc, getMaxSpeed());
+            int w = rank(track, turns, landing);
+            if (w < bestWeight) {
+                bestWeight = w;
+                bestIdx = idx;
             }
         }
 
-        return bestPos;
+        if (bestIdx < 0) return packDestination(row, col);
+        return packDestination(track.rowOf(bestIdx), track.colOf(bestIdx));
     }
 }
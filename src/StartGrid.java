@@ -0,0 +1,46 @@
+/**
+ * StartGrid
+ * ---------
+ * Hands out start cells in the same order as repeated calls to
+ * Racetrack.findHighestWeightStart: highest weight first, ties in
+ * row-major order, walls and cells that can't reach a finish skipped.
+ * Only the first Racetrack.MAX_START_CELLS cells are handed out.
+ *
+ * The order itself is computed once per track (a counting sort of the
+ * weight field, see Racetrack.startOrder()) and shared; each StartGrid
+ * is just a cursor into it, so placing N cars costs O(N) after the
+ * first grid, and any number of grids can deal from the same track.
+ */
+public class StartGrid {
+
+    private final Racetrack track;
+    private final int[] order;
+    private int next;
+
+    public StartGrid(Racetrack track) {
+        this.track = track;
+        this.order = track.startOrder();
+    }
+
+    /** @return true while there are start cells left */
+    public boolean hasNext() {
+        return next < order.length;
+    }
+
+    /** @return flat index of the next start cell, or -1 when none are left */
+    public int nextIndex() {
+        return (next < order.length) ? order[next++] : -1;
+    }
+
+    /** @return the next start cell, or null when none are left */
+    public Position next() {
+        int idx = nextIndex();
+        if (idx < 0) return null;
+        return new Position(track.rowOf(idx), track.colOf(idx));
+    }
+
+    /** @return start cells handed out so far */
+    public int getPlaced() {
+        return next;
+    }
+}
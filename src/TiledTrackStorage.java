@@ -0,0 +1,205 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * TiledTrackStorage
+ * -----------------
+ * Read-only TrackStorage for tracks too large for the heap.
+ *  - The grid is split into TILE_SIZE x TILE_SIZE tiles
+ *  - Each tile holds its cells and weights in one direct ByteBuffer,
+ *    read from a compiled .rtc file (see TrackCache) the first time a
+ *    car looks at a cell in it
+ *  - At most maxTiles tiles stay loaded; loading one more drops the
+ *    least recently used
+ *  - The file stays open for the storage's lifetime; a reader interrupted
+ *    mid-read closes the channel, so the next load reopens it
+ *
+ * Safe to share between threads: tiles are published atomically, and a
+ * dropped tile is only unlinked, so a reader still holding it keeps
+ * seeing valid (read-only) data until the garbage collector frees it.
+ * Recency is the load count at a tile's last use, only ever moved
+ * forward; it is updated per read without locking, which is exact for
+ * one thread and close enough for several.
+ */
+public class TiledTrackStorage implements TrackStorage {
+
+    /** Tiles are TILE_SIZE x TILE_SIZE cells. */
+    private static final int TILE_SHIFT = 8;
+    private static final int TILE_SIZE = 1 << TILE_SHIFT;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    private static final int TILE_CELLS = TILE_SIZE * TILE_SIZE;
+
+    /** One tile: cells, then big-endian int weights. */
+    public static final int TILE_BYTES = TILE_CELLS * 5;
+
+    private final Path file;
+    private final int rows;
+    private final int cols;
+    private final long cellsOffset;
+    private final long weightsOffset;
+
+    private final int tileCols;
+    private final int maxTiles;
+    private final AtomicReferenceArray<ByteBuffer> tiles;
+
+    /** Load count at which each tile was last used. */
+    private final AtomicLongArray lastUsed;
+    private volatile long loads;
+
+    /** Open track file; guarded by this. */
+    private FileChannel channel;
+
+    /** Indices of the loaded tiles; guarded by this. */
+    private final int[] resident;
+    private int residentCount;
+
+    /**
+     * @param file          compiled track file
+     * @param cellsOffset   file position of cell (0,0)
+     * @param weightsOffset file position of the weight of cell (0,0)
+     * @param maxBytes      memory budget for loaded tiles (at least two
+     *                      tiles are always allowed)
+     * @throws IOException if the file can't be opened
+     */
+    public TiledTrackStorage(Path file, int rows, int cols,
+                             long cellsOffset, long weightsOffset, long maxBytes) throws IOException {
+        if ((long) rows * cols > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Track has more cells than a flat index can address.");
+        }
+        this.file = file;
+        this.rows = rows;
+        this.cols = cols;
+        this.cellsOffset = cellsOffset;
+        this.weightsOffset = weightsOffset;
+
+        int tileRows = (rows + TILE_MASK) >> TILE_SHIFT;
+        this.tileCols = (cols + TILE_MASK) >> TILE_SHIFT;
+        int tileCount = tileRows * tileCols;
+        this.maxTiles = (int) Math.max(2, Math.min(tileCount, maxBytes / TILE_BYTES));
+
+        this.tiles = new AtomicReferenceArray<>(tileCount);
+        this.lastUsed = new AtomicLongArray(tileCount);
+        this.resident = new int[maxTiles];
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    @Override
+    public byte cell(int idx) {
+        int r = idx / cols;
+        int c = idx - r * cols;
+        return tile(r, c).get(((r & TILE_MASK) << TILE_SHIFT) | (c & TILE_MASK));
+    }
+
+    @Override
+    public int weight(int idx) {
+        int r = idx / cols;
+        int c = idx - r * cols;
+        return tile(r, c).getInt(TILE_CELLS + ((((r & TILE_MASK) << TILE_SHIFT) | (c & TILE_MASK)) << 2));
+    }
+
+    @Override
+    public void setCell(int idx, byte cell) {
+        throw new UnsupportedOperationException("Tiled tracks are read-only.");
+    }
+
+    @Override
+    public void setWeight(int idx, int weight) {
+        throw new UnsupportedOperationException("Tiled tracks are read-only.");
+    }
+
+    @Override
+    public boolean isMutable() { return false; }
+
+    @Override
+    public boolean isTiled() { return true; }
+
+    /** @return number of tiles currently loaded */
+    public synchronized int getLoadedTiles() { return residentCount; }
+
+    /** @return number of tile loads so far (misses) */
+    public long getTileLoads() { return loads; }
+
+    private ByteBuffer tile(int r, int c) {
+        int t = (r >> TILE_SHIFT) * tileCols + (c >> TILE_SHIFT);
+        ByteBuffer tile = tiles.get(t);
+        if (tile == null) {
+            tile = load(t);
+        }
+        // a reader that fell behind must not move a tile back in time
+        long now = loads;
+        long used = lastUsed.getOpaque(t);
+        while (used < now && !lastUsed.weakCompareAndSetVolatile(t, used, now)) {
+            used = lastUsed.getOpaque(t);
+        }
+        return tile;
+    }
+
+    private synchronized ByteBuffer load(int t) {
+        ByteBuffer tile = tiles.get(t);
+        if (tile != null) return tile;
+
+        if (residentCount == maxTiles) {
+            evictLeastRecentlyUsed();
+        }
+
+        tile = ByteBuffer.allocateDirect(TILE_BYTES);
+        int r0 = (t / tileCols) << TILE_SHIFT;
+        int c0 = (t % tileCols) << TILE_SHIFT;
+        int height = Math.min(TILE_SIZE, rows - r0);
+        int width = Math.min(TILE_SIZE, cols - c0);
+
+        try {
+            try {
+                readTile(tile, r0, c0, height, width);
+            } catch (ClosedChannelException e) {
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+                readTile(tile, r0, c0, height, width);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read track tile from " + file, e);
+        }
+
+        tiles.set(t, tile);
+        resident[residentCount++] = t;
+        loads++;
+        return tile;
+    }
+
+    private void readTile(ByteBuffer tile, int r0, int c0, int height, int width) throws IOException {
+        for (int tr = 0; tr < height; tr++) {
+            long cell = (long) (r0 + tr) * cols + c0;
+            int at = tr << TILE_SHIFT;
+            readFully(channel, tile, at, width, cellsOffset + cell);
+            readFully(channel, tile, TILE_CELLS + (at << 2), width << 2, weightsOffset + (cell << 2));
+        }
+    }
+
+    private void evictLeastRecentlyUsed() {
+        int victim = 0;
+        for (int i = 1; i < residentCount; i++) {
+            if (lastUsed.get(resident[i]) < lastUsed.get(resident[victim])) {
+                victim = i;
+            }
+        }
+        tiles.set(resident[victim], null);
+        resident[victim] = resident[--residentCount];
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer tile, int at, int length, long position)
+            throws IOException {
+        ByteBuffer dst = tile.duplicate();
+        dst.limit(at + length).position(at);
+        while (dst.hasRemaining()) {
+            if (channel.read(dst, position + (dst.position() - at)) < 0) {
+                throw new IOException("Unexpected end of track file.");
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Tournament
+ * ----------
+ * Round-robin of car strategies over a set of tracks.
+ *  - Every pair of entrants races on every track, once in each seating
+ *    (the first seat starts furthest back and moves first)
+ *  - Races are independent RaceSimulator runs spread over a ForkJoinPool
+ *  - Tracks are shared read-only between all races
+ *  - Returns a TournamentResult with win rates and races per second
+ */
+public class Tournament {
+
+    /** Builds a fresh car for one race. */
+    public interface CarFactory {
+        Car create(char id, int row, int col, Racetrack track);
+    }
+
+    /** A named strategy taking part in the tournament. */
+    public static class Entrant {
+        private final String name;
+        private final CarFactory factory;
+
+        public Entrant(String name, CarFactory factory) {
+            this.name = name;
+            this.factory = factory;
+        }
+
+        public String getName() { return name; }
+        public CarFactory getFactory() { return factory; }
+    }
+
+    private final List<Racetrack> tracks;
+    private final List<Entrant> entrants;
+    private final int rounds;
+    private final int maxTurns;
+
+    /**
+     * @param tracks   tracks to race on
+     * @param entrants strategies; each pair meets on every track
+     * @param rounds   how many times every pairing is repeated
+     * @param maxTurns turn limit per race
+     */
+    public Tournament(List<Racetrack> tracks, List<Entrant> entrants, int rounds, int maxTurns) {
+        if (entrants.size() < 2) {
+            throw new IllegalArgumentException("A tournament needs at least two entrants.");
+        }
+        this.tracks = new ArrayList<>(tracks);
+        this.entrants = new ArrayList<>(entrants);
+        this.rounds = rounds;
+        this.maxTurns = maxTurns;
+    }
+
+    /**
+     * Run on the common ForkJoinPool (one worker per core).
+     */
+    public TournamentResult run() {
+        return run(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Run every race of the tournament on the given pool.
+     */
+    public TournamentResult run(ForkJoinPool pool) {
+        int n = entrants.size();
+        int pairs = n * (n - 1);        // ordered pairs = both seatings
+        int races = tracks.size() * pairs * rounds;
+
+        // winning entrant per race, -1 for no winner; each race writes its own slot
+        int[] winners = new int[races];
+
+        long start = System.nanoTime();
+        try {
+            pool.submit(() -> IntStream.range(0, races).parallel()
+                    .forEach(i -> winners[i] = runRace(i, n, pairs))).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Tournament interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Tournament race failed.", e.getCause());
+        }
+        long elapsed = System.nanoTime() - start;
+
+        int[] wins = new int[n];
+        int[] played = new int[n];
+        int draws = 0;
+        for (int i = 0; i < races; i++) {
+            int pair = (i / rounds) % pairs;
+            played[firstSeat(pair, n)]++;
+            played[secondSeat(pair, n)]++;
+            if (winners[i] < 0) {
+                draws++;
+            } else {
+                wins[winners[i]]++;
+            }
+        }
+
+        List<String> names = new ArrayList<>();
+        for (Entrant e : entrants) {
+            names.add(e.getName());
+        }
+        return new TournamentResult(names, wins, played, draws, races, elapsed);
+    }
+
+    /**
+     * Race number i: consecutive numbers repeat the same pairing,
+     * then cycle through pairings, then through tracks.
+     * @return index of the winning entrant, or -1
+     */
+    private int runRace(int i, int n, int pairs) {
+        int pair = (i / rounds) % pairs;
+        Racetrack track = tracks.get(i / (rounds * pairs));
+
+        int a = firstSeat(pair, n);
+        int b = secondSeat(pair, n);
+
+        StartGrid grid = new StartGrid(track);
+        Position pa = grid.next();
+        Position pb = grid.next();
+        if (pb == null) return -1;
+
+        Car[] cars = new Car[2];
+        cars[0] = entrants.get(a).getFactory().create('1', pa.getRow(), pa.getCol(), track);
+        cars[1] = entrants.get(b).getFactory().create('2', pb.getRow(), pb.getCol(), track);
+
+        RaceResult result = new RaceSimulator(track, cars, maxTurns).run();
+        if (result.getWinner() == cars[0]) return a;
+        if (result.getWinner() == cars[1]) return b;
+        return -1;
+    }
+
+    /** Ordered pair p covers (a,b) with a != b. */
+    private static int firstSeat(int pair, int n) {
+        return pair / (n - 1);
+    }
+
+    private static int secondSeat(int pair, int n) {
+        int a = pair / (n - 1);
+        int b = pair % (n - 1);
+        return (b >= a) ? b + 1 : b;
+    }
+
+    /**
+     * SportsCar vs AgileCar vs PlannerCar over the track files given on the command line
+     * (track1.txt if none).
+     */
+    public static void main(String[] args) {
+        List<Racetrack> tracks = new ArrayList<>();
+        if (args.length == 0) {
+            tracks.add(TrackCache.load("track1.txt"));
+        }
+        for (String fileName : args) {
+            tracks.add(TrackCache.load(fileName));
+        }
+
+        List<Entrant> entrants = new ArrayList<>();
+        entrants.add(new Entrant("SportsCar",
+                (id, r, c, t) -> new SportsCar(id, r, c, 3, 3, 5, t)));
+        entrants.add(new Entrant("AgileCar",
+                (id, r, c, t) -> new AgileCar(id, r, c, 3, 3, 5, t)));
+        entrants.add(new Entrant("PlannerCar",
+                (id, r, c, t) -> new PlannerCar(id, r, c, 3, 3, 5, t)));
+
+        TournamentResult result = new Tournament(tracks, entrants, 10000, 1000).run();
+        System.out.println(result);
+    }
+}
@@ -0,0 +1,67 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TournamentResult
+ * ----------------
+ * Aggregated outcome of a Tournament run.
+ *  - wins and races played per entrant
+ *  - races without a winner (turn limit reached)
+ *  - wall-clock time and throughput in races per second
+ */
+public class TournamentResult {
+
+    private final List<String> names;
+    private final int[] wins;
+    private final int[] played;
+    private final int draws;
+    private final int races;
+    private final long elapsedNanos;
+
+    public TournamentResult(List<String> names,
+                            int[] wins,
+                            int[] played,
+                            int draws,
+                            int races,
+                            long elapsedNanos) {
+        this.names = new ArrayList<>(names);
+        this.wins = wins.clone();
+        this.played = played.clone();
+        this.draws = draws;
+        this.races = races;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getEntrantCount() { return names.size(); }
+    public String getName(int entrant) { return names.get(entrant); }
+    public int getWins(int entrant) { return wins[entrant]; }
+    public int getPlayed(int entrant) { return played[entrant]; }
+    public int getDraws() { return draws; }
+    public int getRaces() { return races; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    /** @return share of its races the entrant won, 0.0 to 1.0 */
+    public double getWinRate(int entrant) {
+        if (played[entrant] == 0) return 0.0;
+        return (double) wins[entrant] / played[entrant];
+    }
+
+    public double getRacesPerSecond() {
+        if (elapsedNanos <= 0) return 0.0;
+        return races * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(races).append(" races in ")
+                .append(String.format("%.3f", elapsedNanos / 1_000_000_000.0)).append(" s (")
+                .append(String.format("%.0f", getRacesPerSecond())).append(" races/sec)\n");
+        for (int i = 0; i < names.size(); i++) {
+            sb.append(String.format("  %-12s %7d / %-7d wins (%.1f%%)%n",
+                    names.get(i), wins[i], played[i], getWinRate(i) * 100.0));
+        }
+        sb.append("  no winner: ").append(draws);
+        return sb.toString();
+    }
+}
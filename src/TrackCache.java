@@ -0,0 +1,417 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * TrackCache
+ * ----------
+ * Compiled binary form of a track file, stored next to it as
+ * "<file>.rtc", so startup can skip parsing and computeWeights.
+ *
+ * Layout (big-endian):
+ *  - int   magic "RTC4"
+ *  - long  source file size
+ *  - long  source file last-modified time (millis)
+ *  - long  FNV-1a 64 hash of the source file content
+ *  - int   rows, int cols
+ *  - long  Racetrack.contentHash() of the track
+ *  - int   Racetrack.maxTerrainCost() of the track
+ *  - int   start cell count n
+ *  - byte  terrain costs[256]   (cost of entering each track character)
+ *  - byte  cells[rows * cols]   (row-major track characters)
+ *  - int   weights[rows * cols] (row-major weight grid)
+ *  - int   start cells[n]       (Racetrack.startOrder(), so tiled tracks
+ *                                never scan the grid for it)
+ *
+ * The cache is used as-is when size and modification time still match.
+ * If either changed, the source is hashed and the cache is reused only
+ * if the content is the same; otherwise the track is rebuilt and the
+ * cache rewritten.
+ *
+ * compile() writes the cache for a track file without ever holding the
+ * track on the heap, and openTiled() races straight off the result, for
+ * tracks larger than the heap.
+ */
+public class TrackCache {
+
+    private static final int MAGIC = 0x52544334; // "RTC4"
+    private static final int COST_BYTES = 256;
+    private static final int HEADER_BYTES = 4 + 8 + 8 + 8 + 4 + 4 + 8 + 4 + 4 + COST_BYTES;
+    private static final String SUFFIX = ".rtc";
+
+    /** Chunk size used when streaming a track file or weight grid. */
+    private static final int WRITE_CHUNK = 1 << 20;
+
+    private TrackCache() {
+    }
+
+    /**
+     * Load a track, using (and refreshing) its compiled cache.
+     * Falls back to new Racetrack(fileName) when the source can't be read,
+     * which in turn falls back to the default track.
+     */
+    public static Racetrack load(String fileName) {
+        Path source = Paths.get(fileName);
+        Path cache = Paths.get(fileName + SUFFIX);
+
+        long size;
+        long modified;
+        try {
+            size = Files.size(source);
+            modified = Files.getLastModifiedTime(source).toMillis();
+        } catch (IOException e) {
+            return new Racetrack(fileName);
+        }
+
+        Long sourceHash = null;
+        try {
+            if (Files.isRegularFile(cache)) {
+                Racetrack cached = read(cache, size, modified, null);
+                if (cached != null) return cached;
+
+                // size or time changed: reuse the cache if the content didn't
+                sourceHash = hash(source);
+                cached = read(cache, -1, -1, sourceHash);
+                if (cached != null) {
+                    write(cache, cached, size, modified, sourceHash);
+                    return cached;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // unreadable or corrupt cache: rebuild below
+        }
+
+        Racetrack track;
+        try {
+            track = Racetrack.fromFile(fileName);
+            if (sourceHash == null) sourceHash = hash(source);
+        } catch (IOException | RuntimeException e) {
+            return new Racetrack(fileName);
+        }
+
+        try {
+            write(cache, track, size, modified, sourceHash);
+        } catch (IOException e) {
+            // read-only folder etc.: the track itself is still fine
+        }
+        return track;
+    }
+
+    /**
+     * Compile a track file into its cache ("<file>.rtc") without building
+     * the track on the heap: rows are streamed from the source straight
+     * into the cache, and weights are computed over the cache mapped into
+     * memory (see MappedTrackStorage). Only one row, the cost table and
+     * the search frontier live on the heap, so tracks larger than the heap
+     * can be compiled and then raced with openTiled().
+     * @return name of the compiled file
+     * @throws IOException or RuntimeException if the file can't be used
+     */
+    public static String compile(String fileName) throws IOException {
+        Path source = Paths.get(fileName);
+        Path cache = Paths.get(fileName + SUFFIX);
+        Path temp = Paths.get(cache.toString() + ".tmp");
+        long size = Files.size(source);
+        long modified = Files.getLastModifiedTime(source).toMillis();
+
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temp,
+                     StandardOpenOption.CREATE, StandardOpenOption.READ,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            // rows go after the header, which is written last
+            out.position(HEADER_BYTES);
+            RowWriter rows = new RowWriter(out);
+            ByteBuffer chunk = ByteBuffer.allocate(WRITE_CHUNK);
+            byte[] bytes = chunk.array();
+            long hash = 0xcbf29ce484222325L;
+            int n;
+            while ((n = in.read(chunk.clear())) >= 0) {
+                for (int i = 0; i < n; i++) {
+                    byte b = bytes[i];
+                    hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+                    if (b == '\n' || b == '\r') {
+                        rows.endLine();
+                    } else {
+                        rows.add(b);
+                    }
+                }
+            }
+            rows.endLine();
+            rows.flush();
+            if (rows.rows == 0) {
+                throw new RuntimeException("Track file is empty.");
+            }
+
+            int cellCount = rows.rows * rows.cols;
+            MappedTrackStorage storage = new MappedTrackStorage(out,
+                    HEADER_BYTES, HEADER_BYTES + (long) cellCount, cellCount);
+            Racetrack.computeWeights(rows.rows, rows.cols, storage, rows.costs);
+            Racetrack track = new Racetrack(rows.rows, rows.cols, storage, rows.costs);
+
+            ByteBuffer header = header(track, size, modified, hash);
+            storage.force();
+            out.position(HEADER_BYTES + cellCount * 5L);
+            writeInts(out, track.startOrder());
+            out.position(0);
+            writeFully(out, header);
+        }
+
+        Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return cache.toString();
+    }
+
+    /**
+     * Open a compiled track file (for example "big.txt.rtc") as a
+     * read-only track whose cells and weights stay off-heap in tiles that
+     * are read as cars reach them (see TiledTrackStorage).
+     * @param maxBytes memory budget for loaded tiles
+     * @throws IOException if the file can't be read or is not a compiled track
+     */
+    public static Racetrack openTiled(String cacheFile, long maxBytes) throws IOException {
+        Path cache = Paths.get(cacheFile);
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("Not a compiled track file: " + cacheFile);
+                }
+            }
+            header.flip();
+
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a compiled track file: " + cacheFile);
+            }
+            header.position(4 + 8 + 8 + 8);
+            int rows = header.getInt();
+            int cols = header.getInt();
+            long contentHash = header.getLong();
+            int maxTerrainCost = header.getInt();
+            int startCount = header.getInt();
+            byte[] costs = new byte[COST_BYTES];
+            header.get(costs);
+            long cellCount = (long) rows * cols;
+            if (rows <= 0 || cols <= 0 || !validSize(cellCount, startCount, channel.size())) {
+                throw new IOException("Corrupt compiled track file: " + cacheFile);
+            }
+
+            ByteBuffer startBytes = ByteBuffer.allocate(startCount * 4);
+            long position = HEADER_BYTES + cellCount * 5;
+            while (startBytes.hasRemaining()) {
+                if (channel.read(startBytes, position + startBytes.position()) < 0) {
+                    throw new IOException("Corrupt compiled track file: " + cacheFile);
+                }
+            }
+            int[] startOrder = new int[startCount];
+            startBytes.flip().asIntBuffer().get(startOrder);
+
+            TrackStorage storage = new TiledTrackStorage(cache, rows, cols,
+                    HEADER_BYTES, HEADER_BYTES + cellCount, maxBytes);
+            return new Racetrack(rows, cols, storage, costs, contentHash, maxTerrainCost, startOrder);
+        }
+    }
+
+    /**
+     * Read a compiled track if its header matches.
+     * Pass size/modified to match on file metadata (hash ignored), or
+     * size = -1 and a hash to match on content.
+     * @return the track, or null if the header does not match
+     */
+    private static Racetrack read(Path cache, long size, long modified, Long hash) throws IOException {
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) return null;
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buf.getInt() != MAGIC) return null;
+            long cachedSize = buf.getLong();
+            long cachedModified = buf.getLong();
+            long cachedHash = buf.getLong();
+
+            if (hash == null) {
+                if (cachedSize != size || cachedModified != modified) return null;
+            } else if (cachedHash != hash) {
+                return null;
+            }
+
+            int rows = buf.getInt();
+            int cols = buf.getInt();
+            long contentHash = buf.getLong();
+            int maxTerrainCost = buf.getInt();
+            int startCount = buf.getInt();
+            long cellCount = (long) rows * cols;
+            if (rows <= 0 || cols <= 0 || !validSize(cellCount, startCount, channel.size())) {
+                return null;
+            }
+
+            byte[] costs = new byte[COST_BYTES];
+            buf.get(costs);
+
+            byte[] cells = new byte[(int) cellCount];
+            buf.get(cells);
+
+            int[] weights = new int[(int) cellCount];
+            buf.asIntBuffer().get(weights);
+
+            int[] startOrder = new int[startCount];
+            buf.position((int) (HEADER_BYTES + cellCount * 5));
+            buf.asIntBuffer().get(startOrder);
+
+            return new Racetrack(rows, cols, cells, weights, costs, contentHash, maxTerrainCost, startOrder);
+        }
+    }
+
+    /**
+     * Write the compiled track to a temp file, then move it into place so
+     * a crash never leaves a half-written cache behind.
+     */
+    private static void write(Path cache, Racetrack track, long size, long modified, long hash)
+            throws IOException {
+        Path temp = Paths.get(cache.toString() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            writeFully(channel, header(track, size, modified, hash));
+
+            writeFully(channel, ByteBuffer.wrap(track.cellData()));
+            writeInts(channel, track.weightData());
+            writeInts(channel, track.startOrder());
+        }
+
+        Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ByteBuffer header(Racetrack track, long size, long modified, long hash) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC)
+                .putLong(size)
+                .putLong(modified)
+                .putLong(hash)
+                .putInt(track.height())
+                .putInt(track.width())
+                .putLong(track.contentHash())
+                .putInt(track.maxTerrainCost())
+                .putInt(track.startOrder().length)
+                .put(track.terrainCosts());
+        return header.flip();
+    }
+
+    /** Header, cells, weights and startCount start cells, exactly. */
+    private static boolean validSize(long cellCount, int startCount, long fileSize) {
+        return startCount >= 0 && startCount <= Racetrack.MAX_START_CELLS
+                && HEADER_BYTES + cellCount * 5 + startCount * 4L == fileSize;
+    }
+
+    /** Write ints big-endian at the channel's position, a chunk at a time. */
+    private static void writeInts(FileChannel channel, int[] values) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocateDirect(Math.min(WRITE_CHUNK, Math.max(4, values.length * 4)));
+        IntBuffer ints = chunk.asIntBuffer();
+        for (int i = 0; i < values.length; ) {
+            int n = Math.min(ints.capacity(), values.length - i);
+            ints.clear();
+            ints.put(values, i, n);
+            chunk.clear().limit(n * 4);
+            writeFully(channel, chunk);
+            i += n;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a file's bytes.
+     */
+    static long hash(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long h = 0xcbf29ce484222325L;
+            long pos = 0;
+            long size = channel.size();
+            while (pos < size) {
+                long n = Math.min(Integer.MAX_VALUE, size - pos);
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, n);
+                for (int i = 0; i < n; i++) {
+                    h ^= buf.get(i) & 0xFF;
+                    h *= 0x100000001b3L;
+                }
+                pos += n;
+            }
+            return h;
+        }
+    }
+
+    /**
+     * Splits a streamed track file into rows the way Racetrack parses it
+     * (trimmed, empty lines skipped, '#' lines applied to the cost table)
+     * and appends each row's cells to the output channel.
+     */
+    private static final class RowWriter {
+
+        private final FileChannel out;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_CHUNK);
+        private byte[] line = new byte[256];
+        private int length;
+
+        final byte[] costs = Racetrack.defaultTerrainCosts();
+        int rows;
+        int cols;
+
+        RowWriter(FileChannel out) {
+            this.out = out;
+        }
+
+        void add(byte b) {
+            if (length == line.length) line = Arrays.copyOf(line, length * 2);
+            line[length++] = b;
+        }
+
+        void endLine() throws IOException {
+            int from = 0;
+            int to = length;
+            length = 0;
+            while (from < to && (line[from] & 0xFF) <= ' ') from++;
+            while (to > from && (line[to - 1] & 0xFF) <= ' ') to--;
+            if (from == to) return;
+
+            if (line[from] == '#') {
+                Racetrack.parseDirective(new String(line, from, to - from, StandardCharsets.US_ASCII), costs);
+                return;
+            }
+            if (rows == 0) {
+                cols = to - from;
+            } else if (to - from != cols) {
+                throw new RuntimeException("All rows in track file must have the same length.");
+            }
+            if ((long) (rows + 1) * cols > Integer.MAX_VALUE) {
+                throw new RuntimeException("Track has more cells than a flat index can address.");
+            }
+
+            for (int i = from; i < to; ) {
+                if (!buffer.hasRemaining()) flush();
+                int n = Math.min(buffer.remaining(), to - i);
+                buffer.put(line, i, n);
+                i += n;
+            }
+            rows++;
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            writeFully(out, buffer);
+            buffer.clear();
+        }
+    }
+}
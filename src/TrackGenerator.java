@@ -0,0 +1,62 @@
+import java.util.Random;
+
+/**
+ * TrackGenerator
+ * --------------
+ * Builds synthetic tracks of any size for benchmarks and stress races.
+ *  - Wall border all the way around
+ *  - Finish line along the first row inside the border
+ *  - Random wall blocks scattered over the rest of the field
+ *
+ * The same seed always produces the same track.
+ */
+public class TrackGenerator {
+
+    private TrackGenerator() {
+    }
+
+    /**
+     * @param rows         grid height including the border (at least 4)
+     * @param cols         grid width including the border (at least 3)
+     * @param wallDensity  chance (0.0 to 1.0) that an inner cell starts a wall block
+     * @param seed         random seed
+     */
+    public static char[][] generate(int rows, int cols, double wallDensity, long seed) {
+        if (rows < 4 || cols < 3) {
+            throw new IllegalArgumentException("Generated tracks need at least 4 rows and 3 columns.");
+        }
+
+        Random random = new Random(seed);
+        char[][] grid = new char[rows][cols];
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                boolean border = r == 0 || c == 0 || r == rows - 1 || c == cols - 1;
+                grid[r][c] = border ? 'X' : 'T';
+            }
+        }
+
+        // 2x2 wall blocks below the finish line, leaving the row under it open
+        for (int r = 3; r < rows - 2; r++) {
+            for (int c = 1; c < cols - 2; c++) {
+                if (random.nextDouble() < wallDensity) {
+                    grid[r][c] = 'X';
+                    grid[r][c + 1] = 'X';
+                    grid[r + 1][c] = 'X';
+                    grid[r + 1][c + 1] = 'X';
+                }
+            }
+        }
+
+        for (int c = 1; c < cols - 1; c++) {
+            grid[1][c] = 'F';
+        }
+
+        return grid;
+    }
+
+    /** Square track with a light sprinkling of walls. */
+    public static Racetrack square(int size, long seed) {
+        return new Racetrack(generate(size, size, 0.03, seed));
+    }
+}
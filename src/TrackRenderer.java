@@ -0,0 +1,220 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * TrackRenderer
+ * -------------
+ * Draws track frames with cars overlaid.
+ *  - Every frame is built in a reused byte buffer and sent with a single write
+ *  - Plain mode prints the same text displayTrack always printed
+ *  - ANSI mode draws the first frame in full, then only repaints the cells
+ *    that changed since the previous frame
+ *  - Frame skip and max FPS settings drop frames so a long race is not
+ *    held back by the terminal
+ */
+public class TrackRenderer {
+
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ANSI_CLEAR = "\u001b[2J\u001b[H".getBytes(StandardCharsets.US_ASCII);
+
+    /** Largest track drawn; a frame of a bigger one is too large to print. */
+    private static final int MAX_CELLS = 1 << 24;
+
+    private final Racetrack track;
+    private final OutputStream out;
+    private final int rows;
+    private final int cols;
+
+    /** Display characters of the frame being built, one byte per cell. */
+    private final byte[] cells;
+
+    /** Cells of the last frame drawn in ANSI mode. */
+    private byte[] previous;
+
+    /** Output bytes of the current frame, grown as needed and reused. */
+    private byte[] buffer;
+    private int length;
+
+    private boolean ansi;
+    private int frameSkip = 1;
+    private long minFrameNanos;
+
+    private long framesRequested;
+    private long lastFrameTime;
+
+    public TrackRenderer(Racetrack track, OutputStream out) {
+        this.track = track;
+        this.out = out;
+        this.rows = track.height();
+        this.cols = track.width();
+        if ((long) rows * cols > MAX_CELLS) {
+            throw new IllegalArgumentException("Track is too large to render: " + rows + "x" + cols);
+        }
+        this.cells = new byte[rows * cols];
+        this.buffer = new byte[rows * (cols * 2 + NEWLINE.length) + NEWLINE.length * 2];
+    }
+
+    /** Redraw only changed cells using ANSI cursor movement. */
+    public void setAnsi(boolean ansi) {
+        this.ansi = ansi;
+        this.previous = null;
+    }
+
+    /** Draw only every n-th frame passed to render() (1 = every frame). */
+    public void setFrameSkip(int n) {
+        this.frameSkip = Math.max(1, n);
+    }
+
+    /** Drop frames that would exceed this many frames per second (0 = no limit). */
+    public void setMaxFps(double fps) {
+        this.minFrameNanos = (fps <= 0) ? 0 : (long) (1_000_000_000L / fps);
+    }
+
+    /**
+     * Draw the track with cars overlaid, unless frame skip or the FPS
+     * limit says to drop this frame.
+     * @return true if the frame was drawn
+     */
+    public boolean render(Car[] cars) {
+        framesRequested++;
+        if ((framesRequested - 1) % frameSkip != 0) return false;
+
+        if (minFrameNanos > 0) {
+            long now = System.nanoTime();
+            if (lastFrameTime != 0 && now - lastFrameTime < minFrameNanos) return false;
+            lastFrameTime = now;
+        }
+
+        drawBase();
+        drawCars(cars);
+        flushFrame(true);
+        return true;
+    }
+
+    /**
+     * Draw the final frame with the winner's path marked on the track.
+     * Always drawn, whatever the frame skip and FPS settings.
+     */
+    public void renderWinningPath(List<Position> path, Car[] cars, Car winner) {
+        drawBase();
+
+        // path
+        if (path != null) {
+            byte id = (byte) winner.getIdNumber();
+            for (Position p : path) {
+                if (!track.isOutOfBounds(p) && !track.isWall(p)) {
+                    cells[track.index(p.getRow(), p.getCol())] = id;
+                }
+            }
+        }
+
+        drawCars(cars);
+        flushFrame(false);
+    }
+
+    private void drawBase() {
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                cells[r * cols + c] = (byte) track.getDisplayChar(r, c);
+            }
+        }
+    }
+
+    /** Later cars in the array win when two share a cell, as before. */
+    private void drawCars(Car[] cars) {
+        for (Car car : cars) {
+            if (car != null && !track.isOutOfBounds(car.getRow(), car.getCol())) {
+                cells[track.index(car.getRow(), car.getCol())] = (byte) car.getIdNumber();
+            }
+        }
+    }
+
+    /**
+     * @param leadingBlank plain mode only: print a blank line before the grid
+     */
+    private void flushFrame(boolean leadingBlank) {
+        length = 0;
+        if (ansi && previous != null) {
+            encodeDiff();
+        } else if (ansi) {
+            append(ANSI_CLEAR);
+            encodeGrid();
+            previous = cells.clone();
+        } else {
+            if (leadingBlank) append(NEWLINE);
+            encodeGrid();
+            append(NEWLINE);
+        }
+
+        try {
+            out.write(buffer, 0, length);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void encodeGrid() {
+        for (int r = 0; r < rows; r++) {
+            ensure(cols * 2 + NEWLINE.length);
+            for (int c = 0; c < cols; c++) {
+                buffer[length++] = cells[r * cols + c];
+                buffer[length++] = ' ';
+            }
+            append(NEWLINE);
+        }
+    }
+
+    /** Move the cursor to each changed cell and repaint just that cell. */
+    private void encodeDiff() {
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] == previous[i]) continue;
+            previous[i] = cells[i];
+            moveCursor(i / cols + 1, (i % cols) * 2 + 1);
+            ensure(1);
+            buffer[length++] = cells[i];
+        }
+        // park the cursor under the grid so other output doesn't overwrite it
+        moveCursor(rows + 1, 1);
+    }
+
+    private void moveCursor(int row, int col) {
+        ensure(24);
+        buffer[length++] = 0x1b;
+        buffer[length++] = '[';
+        appendInt(row);
+        buffer[length++] = ';';
+        appendInt(col);
+        buffer[length++] = 'H';
+    }
+
+    private void appendInt(int v) {
+        int start = length;
+        do {
+            buffer[length++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v > 0);
+        // digits were written backwards
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            byte t = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = t;
+        }
+    }
+
+    private void append(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * TrackStorage
+ * ------------
+ * Where a Racetrack keeps its cell characters and weights, both addressed
+ * by flat row-major index (see Racetrack.index()).
+ *  - HeapTrackStorage: two plain arrays (every track built in memory)
+ *  - TiledTrackStorage: off-heap tiles read lazily from a compiled .rtc
+ *    file, for tracks larger than the heap
+ *  - MappedTrackStorage: a compiled .rtc file mapped read-write, used
+ *    while TrackCache.compile() computes its weights
+ *
+ * Reads must be safe from many threads at once; writes only happen
+ * through Racetrack.setCell() on a track owned by one race.
+ */
+public interface TrackStorage {
+
+    /** Track character of a cell ('X', 'T', 'F' or a terrain character). */
+    byte cell(int idx);
+
+    /** Weight (distance to the finish) of a cell. */
+    int weight(int idx);
+
+    void setCell(int idx, byte cell);
+
+    void setWeight(int idx, int weight);
+
+    /** False when setCell and setWeight are not supported. */
+    boolean isMutable();
+
+    /**
+     * True when cells are loaded piece by piece on demand, so code should
+     * not scan the whole grid.
+     */
+    boolean isTiled();
+}
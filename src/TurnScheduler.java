@@ -0,0 +1,16 @@
+/**
+ * TurnScheduler
+ * -------------
+ * Decides in which order the cars move each turn.
+ * RaceSimulator calls schedule() at the start of every turn with the
+ * order array left over from the previous turn (roster indices 0..n-1,
+ * in roster order before the first turn), so schedulers can keep it
+ * when nothing changed.
+ */
+public interface TurnScheduler {
+
+    /**
+     * Rearrange order (roster indices) into this turn's move order.
+     */
+    void schedule(Car[] cars, Racetrack track, int[] order);
+}
@@ -0,0 +1,221 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * TurnWeightField
+ * ---------------
+ * "Turns to finish" for every cell of a track, for one velocity profile.
+ *  - 0 on finish cells
+ *  - n when the best sequence of legal moves (walls and the grid edge
+ *    cut moves short, exactly as in Car.move) needs n turns to win
+ *  - Racetrack.WALL_WEIGHT on walls and on cells that can never win
+ *
+ * Built by Racetrack.getTurnWeights(); read-only afterwards, except that
+ * Racetrack.setCell() repairs it in place through repair().
+ */
+public final class TurnWeightField {
+
+    private final MoveSet moves;
+    private final int width;
+    private final int[] turns;
+
+    /**
+     * Cells of each move's Bresenham line relative to its start (start
+     * excluded): move k covers lineRows/lineCols[lineStart[k] ..
+     * lineStart[k + 1]). Built on the first repair.
+     */
+    private int[] lineStart;
+    private int[] lineRows;
+    private int[] lineCols;
+
+    /** Largest |row| and |col| offset of any move. */
+    private int reachRows;
+    private int reachCols;
+
+    TurnWeightField(MoveSet moves, int width, int[] turns) {
+        this.moves = moves;
+        this.width = width;
+        this.turns = turns;
+    }
+
+    public MoveSet getMoveSet() { return moves; }
+
+    /** @return turns to finish from (r,c) */
+    public int get(int r, int c) { return turns[r * width + c]; }
+
+    /** @return turns to finish from the cell with the given flat index */
+    public int at(int idx) { return turns[idx]; }
+
+    // -------- incremental repair --------
+
+    /**
+     * Bring the field up to date after one cell of the track changed.
+     * Only moves starting within one move's reach of the cell can land
+     * differently, so only those cells and the cells whose best route ran
+     * through them are revisited:
+     *  1. In order of old turn count, unset every cell near the change,
+     *     and every cell one turn further out, that no longer has a move
+     *     onto a cell one turn closer to the finish
+     *  2. Give unset and nearby cells the best count their moves offer,
+     *     and spread improvements back along the moves that land on them
+     * Predecessors are found by walking the moves backwards from a cell
+     * (Bresenham lines are the same wherever they start), so no edge
+     * list is kept.
+     */
+    void repair(Racetrack track, int changed) {
+        if (lineStart == null) buildLines();
+
+        PathCursor cursor = new PathCursor();
+        int cr = track.rowOf(changed);
+        int cc = track.colOf(changed);
+        int top = Math.max(0, cr - reachRows);
+        int bottom = Math.min(track.height() - 1, cr + reachRows);
+        int left = Math.max(0, cc - reachCols);
+        int right = Math.min(track.width() - 1, cc + reachCols);
+
+        // 1. unset
+        CellHeap candidates = new CellHeap();
+        for (int r = top; r <= bottom; r++) {
+            for (int c = left; c <= right; c++) {
+                int idx = track.index(r, c);
+                if (turns[idx] < Racetrack.WALL_WEIGHT) candidates.push(turns[idx], idx);
+            }
+        }
+
+        int[] unset = new int[16];
+        int unsetCount = 0;
+        while (!candidates.isEmpty()) {
+            long entry = candidates.pop();
+            int cell = (int) entry;
+            int old = (int) (entry >>> 32);
+            if (turns[cell] != old || isSupported(track, cursor, cell, old)) continue;
+
+            turns[cell] = Racetrack.WALL_WEIGHT;
+            if (unsetCount == unset.length) unset = Arrays.copyOf(unset, unsetCount * 2);
+            unset[unsetCount++] = cell;
+
+            int next = old + 1;
+            forEachPredecessor(track, cursor, cell, p -> {
+                if (turns[p] == next) candidates.push(next, p);
+            });
+        }
+
+        // 2. reseed and spread
+        CellHeap lowered = new CellHeap();
+        for (int i = 0; i < unsetCount; i++) {
+            lower(track, cursor, unset[i], lowered);
+        }
+        for (int r = top; r <= bottom; r++) {
+            for (int c = left; c <= right; c++) {
+                lower(track, cursor, track.index(r, c), lowered);
+            }
+        }
+
+        while (!lowered.isEmpty()) {
+            long entry = lowered.pop();
+            int cell = (int) entry;
+            int t = (int) (entry >>> 32);
+            if (turns[cell] != t) continue;
+
+            int next = t + 1;
+            if (next >= Racetrack.WALL_WEIGHT) continue;
+            forEachPredecessor(track, cursor, cell, p -> {
+                if (next < turns[p]) {
+                    turns[p] = next;
+                    lowered.push(next, p);
+                }
+            });
+        }
+    }
+
+    /** Finish cells, and cells with a move onto a cell at old - 1. */
+    private boolean isSupported(Racetrack track, PathCursor cursor, int cell, int old) {
+        if (track.isFinishAt(cell)) return true;
+        if (track.isWallAt(cell)) return false;
+
+        int r = track.rowOf(cell);
+        int c = track.colOf(cell);
+        for (int k = 0; k < moves.size(); k++) {
+            int to = land(track, cursor, r, c, k);
+            if (to != cell && turns[to] == old - 1) return true;
+        }
+        return false;
+    }
+
+    /** Lower cell to the best count its own moves give, queueing it if it improved. */
+    private void lower(Racetrack track, PathCursor cursor, int cell, CellHeap lowered) {
+        int best;
+        if (track.isFinishAt(cell)) {
+            best = 0;
+        } else if (track.isWallAt(cell)) {
+            best = Racetrack.WALL_WEIGHT;
+        } else {
+            best = Racetrack.WALL_WEIGHT;
+            int r = track.rowOf(cell);
+            int c = track.colOf(cell);
+            for (int k = 0; k < moves.size(); k++) {
+                int to = land(track, cursor, r, c, k);
+                if (to != cell) best = Math.min(best, turns[to] + 1);
+            }
+            if (best > Racetrack.WALL_WEIGHT) best = Racetrack.WALL_WEIGHT;
+        }
+
+        if (best < turns[cell]) {
+            turns[cell] = best;
+            lowered.push(best, cell);
+        }
+    }
+
+    private int land(Racetrack track, PathCursor cursor, int r, int c, int k) {
+        return track.traceMove(cursor, r, c, r + moves.rowOffset(k), c + moves.colOffset(k),
+                moves.getMaxSpeed());
+    }
+
+    /** Cells with a move that lands exactly on cell. */
+    private void forEachPredecessor(Racetrack track, PathCursor cursor, int cell,
+                                    IntConsumer action) {
+        int r = track.rowOf(cell);
+        int c = track.colOf(cell);
+        for (int k = 0; k < moves.size(); k++) {
+            for (int j = lineStart[k]; j < lineStart[k + 1]; j++) {
+                int fr = r - lineRows[j];
+                int fc = c - lineCols[j];
+                if (track.isOutOfBounds(fr, fc)) continue;
+
+                int from = track.index(fr, fc);
+                if (track.isWallAt(from) || track.isFinishAt(from)) continue;
+                if (land(track, cursor, fr, fc, k) == cell) action.accept(from);
+            }
+        }
+    }
+
+    private void buildLines() {
+        int m = moves.size();
+        int[] start = new int[m + 1];
+        int[] rowsOut = new int[16];
+        int[] colsOut = new int[16];
+        int n = 0;
+
+        PathCursor cursor = new PathCursor();
+        for (int k = 0; k < m; k++) {
+            start[k] = n;
+            reachRows = Math.max(reachRows, Math.abs(moves.rowOffset(k)));
+            reachCols = Math.max(reachCols, Math.abs(moves.colOffset(k)));
+            cursor.reset(0, 0, moves.rowOffset(k), moves.colOffset(k));
+            while (cursor.next()) {
+                if (n == rowsOut.length) {
+                    rowsOut = Arrays.copyOf(rowsOut, n * 2);
+                    colsOut = Arrays.copyOf(colsOut, n * 2);
+                }
+                rowsOut[n] = cursor.row();
+                colsOut[n] = cursor.col();
+                n++;
+            }
+        }
+        start[m] = n;
+
+        lineRows = rowsOut;
+        lineCols = colsOut;
+        lineStart = start;
+    }
+}
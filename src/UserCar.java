@@ -25,6 +25,11 @@ public class UserCar extends Car {
         this.in = in;
     }
 
+    @Override
+    public boolean isInteractive() {
+        return true;
+    }
+
     @Override
     public Position chooseDestination(Racetrack track, Car[] cars) {
 
@@ -36,11 +41,7 @@ public class UserCar extends Car {
         System.out.print("Enter horizontal move (negative = left, positive = right): ");
         int dCol = in.nextInt();
 
-        boolean rowOK = Math.abs(dRow) <= getRowVelocity();
-        boolean colOK = Math.abs(dCol) <= getColVelocity();
-        boolean speedOK = Math.abs(dRow) + Math.abs(dCol) <= getMaxSpeed();
-
-        if (!rowOK || !colOK || !speedOK) {
+        if (!getMoveSet().allows(dRow, dCol)) {
             System.out.println();
             System.out.println("❌ INVALID MOVE!");
             System.out.println("Your attempted move: (" + dRow + ", " + dCol + ")");
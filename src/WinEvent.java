@@ -0,0 +1,8 @@
+/**
+ * WinEvent
+ * --------
+ * A car crossed the finish line; getRow/getCol is the finish cell it
+ * stopped on.
+ */
+public class WinEvent extends RaceEvent {
+}